@@ -0,0 +1,138 @@
+package bguspl.set.benchmarks;
+
+import bguspl.set.Config;
+import bguspl.set.IntSetSink;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks of the set engine (the Util methods the dealer and the table use) on decks of several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    /**
+     * The deck and the cards to search in: featureSize x featureCount x number of cards (a table or the whole deck).
+     */
+    @Param({"3x4x12", "3x4x81", "3x5x15", "3x5x243", "4x3x12", "4x3x64", "5x2x12", "5x2x25"})
+    public String variant;
+
+    private Util util;
+
+    /**
+     * The cards to search in, as a list and as an array.
+     */
+    private List<Integer> cardList;
+    private int[] cards;
+
+    /**
+     * A legal set and a set that is not legal, of cards of the deck.
+     */
+    private int[] validSet;
+    private int[] invalidSet;
+
+    /**
+     * A buffer for the features of a set.
+     */
+    private int[][] features;
+
+    /**
+     * A sink that takes every set it is given.
+     */
+    private final IntSetSink all = set -> true;
+
+    @Setup
+    public void setup() {
+        String[] sizes = variant.split("x");
+        Properties properties = new Properties();
+        properties.put("FeatureSize", sizes[0]);
+        properties.put("FeatureCount", sizes[1]);
+        properties.put("LogLevel", "OFF");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+
+        // the same cards in every run, so that the results of different builds can be compared
+        Random random = new Random(0);
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card)
+            deck.add(card);
+        Collections.shuffle(deck, random);
+        cardList = new ArrayList<>(deck.subList(0, Integer.parseInt(sizes[2])));
+        cards = cardList.stream().mapToInt(Integer::intValue).toArray();
+
+        validSet = util.findSets(deck, 1).get(0);
+        do {
+            Collections.shuffle(deck, random);
+            invalidSet = deck.subList(0, config.featureSize).stream().mapToInt(Integer::intValue).toArray();
+        } while (util.testSet(invalidSet));
+        features = new int[config.featureSize][config.featureCount];
+    }
+
+    @Benchmark
+    public boolean testSetValid() {
+        return util.testSet(validSet);
+    }
+
+    @Benchmark
+    public boolean testSetInvalid() {
+        return util.testSet(invalidSet);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsFirst() {
+        return util.findSets(cardList, 1);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsAll() {
+        return util.findSets(cardList, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int findSetsFirstPrimitive() {
+        return util.findSets(cards, cards.length, 1, all);
+    }
+
+    @Benchmark
+    public int findSetsAllPrimitive() {
+        return util.findSets(cards, cards.length, Integer.MAX_VALUE, all);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(validSet);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeaturesReused() {
+        util.cardsToFeatures(validSet, features);
+        return features;
+    }
+}
@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * An interface for the time of the game, and for the waits of the game threads that depend on it (sleeping, and
+ * blocking on the queues, futures and locks that the threads hand work to each other with).
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds (see System.currentTimeMillis).
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the given time (see Thread.sleep).
+     *
+     * @param millis - the time to sleep, in milliseconds.
+     * @throws InterruptedException - if the thread is interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Takes the head of a queue, waiting for the given time if it is empty (see BlockingQueue.poll).
+     *
+     * @param queue  - the queue.
+     * @param millis - the time to wait, in milliseconds.
+     * @return - the head of the queue, or null if the time passed while the queue was empty.
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException;
+
+    /**
+     * Takes the head of a queue, waiting for as long as it is empty (see BlockingQueue.take).
+     *
+     * @param queue - the queue.
+     * @return - the head of the queue.
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    <T> T take(BlockingQueue<T> queue) throws InterruptedException;
+
+    /**
+     * Adds an element to the tail of a queue, waiting for as long as it is full (see BlockingQueue.put).
+     *
+     * @param queue   - the queue.
+     * @param element - the element to add.
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    <T> void put(BlockingQueue<T> queue, T element) throws InterruptedException;
+
+    /**
+     * Waits until a future is completed (see CompletableFuture.get).
+     *
+     * @param future - the future.
+     * @return - the value of the future.
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     * @throws java.util.concurrent.CompletionException - if the future completed exceptionally.
+     */
+    <T> T await(CompletableFuture<T> future) throws InterruptedException;
+
+    /**
+     * Waits on a monitor (that the thread holds) until a condition holds. The threads that make the condition hold
+     * notify the monitor (see Object.wait).
+     *
+     * @param monitor   - the monitor, held by the thread.
+     * @param condition - the condition to wait for.
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    void await(Object monitor, BooleanSupplier condition) throws InterruptedException;
+
+    /**
+     * Registers a game thread (before it is started), that the time of the game depends on.
+     *
+     * @param thread - the thread.
+     */
+    void register(Thread thread);
+}
@@ -36,6 +36,21 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * Whether to find or count all the sets of large collections of cards in parallel (on the common fork/join pool)
+     */
+    public final boolean parallelSetSearch;
+
+    /**
+     * The minimal number of cards for a set search to run in parallel (when parallelSetSearch is enabled)
+     */
+    public final int parallelSetSearchThreshold;
+
+    /**
+     * The file of the precomputed catalog of all the sets of the deck, created if missing (empty for no catalog)
+     */
+    public final String setCatalogFile;
+
     /**
      * The number of human players in the game.
      */
@@ -56,6 +71,31 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether the dealer picks the cards it deals so that there is a legal set on the table whenever the deck allows it
+     */
+    public final boolean solvableDealing;
+
+    /**
+     * Whether to find the sets on the table on a background thread, that also reports the hints (off the dealer thread)
+     */
+    public final boolean backgroundSolver;
+
+    /**
+     * The number of collections of cards (e.g. tables) whose sets are cached, shared by the games in the JVM (0 for none)
+     */
+    public final int setCacheSize;
+
+    /**
+     * Whether the dealer checks all the pending claims of sets together, and removes the legal ones in one go
+     */
+    public final boolean batchClaims;
+
+    /**
+     * Whether the game runs on a virtual clock, that jumps to the next deadline when all the game threads are waiting
+     */
+    public final boolean virtualClock;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -197,6 +237,9 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelSetSearch = Boolean.parseBoolean(properties.getProperty("ParallelSetSearch", "False"));
+        parallelSetSearchThreshold = Integer.parseInt(properties.getProperty("ParallelSetSearchThreshold", "729"));
+        setCatalogFile = properties.getProperty("SetCatalogFile", "").trim();
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -204,6 +247,11 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        solvableDealing = Boolean.parseBoolean(properties.getProperty("SolvableDealing", "False"));
+        backgroundSolver = Boolean.parseBoolean(properties.getProperty("BackgroundSolver", "False"));
+        setCacheSize = Integer.parseInt(properties.getProperty("SetCacheSize", "0"));
+        batchClaims = Boolean.parseBoolean(properties.getProperty("BatchClaims", "False"));
+        virtualClock = Boolean.parseBoolean(properties.getProperty("VirtualClock", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
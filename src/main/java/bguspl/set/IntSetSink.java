@@ -0,0 +1,16 @@
+package bguspl.set;
+
+/**
+ * A consumer of the sets found by the primitive set searches of Util, one set at a time.
+ */
+@FunctionalInterface
+public interface IntSetSink {
+
+    /**
+     * Receives a legal set that was found.
+     *
+     * @param set - the sorted card ids of the set (a buffer that is reused for the next set, copy it to keep it).
+     * @return - true iff the search should go on.
+     */
+    boolean accept(int[] set);
+}
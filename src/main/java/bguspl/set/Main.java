@@ -48,7 +48,7 @@ public class Main {
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, util, players);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
@@ -57,7 +57,8 @@ public class Main {
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Clock clock = config.virtualClock ? new VirtualClock(System.currentTimeMillis()) : new SystemClock();
+        Env env = new Env(logger, config, ui, util, clock);
 
         // create the game entities
         Table table = new Table(env);
@@ -67,6 +68,7 @@ public class Main {
 
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        env.clock.register(dealerThread);
         dealerThread.startWithLog();
 
         try {
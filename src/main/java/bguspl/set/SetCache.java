@@ -0,0 +1,190 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded least recently used cache of the legal sets among collections of cards (e.g. the cards on a table), keyed
+ * by the fingerprint of the cards, and shared by all the games of the same deck in the JVM. It is split into segments
+ * that are locked separately, so that concurrent games rarely wait for each other.
+ */
+public class SetCache {
+
+    /**
+     * The most segments a cache is split into (a power of 2).
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * The caches created so far, shared by every game in the JVM (keyed by featureSize and featureCount).
+     */
+    private static final Map<Long, SetCache> caches = new ConcurrentHashMap<>();
+
+    private final Util util;
+    private final int deckSize;
+
+    /**
+     * The segments of the cache (a power of 2 of them), each one a map in access order (the least recently used entry
+     * first).
+     */
+    private final Segment[] segments;
+
+    /**
+     * The number of lookups that found the sets in the cache, and of the ones that had to search for them.
+     */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache that is not shared (see shared).
+     *
+     * @param util     - the util used to find the sets that are not in the cache.
+     * @param deckSize - the number of cards in the deck.
+     * @param capacity - the number of collections of cards whose sets are cached (at least 1).
+     */
+    SetCache(Util util, int deckSize, int capacity) {
+        this.util = util;
+        this.deckSize = deckSize;
+
+        // every segment holds at least one entry, and the capacities of the segments add up to exactly capacity
+        int count = Integer.highestOneBit(Math.min(SEGMENTS, capacity));
+        segments = new Segment[count];
+        for (int i = 0; i < count; ++i)
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+    }
+
+    /**
+     * Returns the cache of the configured deck, shared by all the games in the JVM.
+     *
+     * @param config - the game configuration.
+     * @param util   - the util used to find the sets that are not in the cache.
+     * @return - the cache (of config.setCacheSize entries), or null if config.setCacheSize is 0.
+     */
+    public static SetCache shared(Config config, Util util) {
+        if (config.setCacheSize <= 0) return null;
+        return caches.computeIfAbsent((long) config.featureSize << Integer.SIZE | config.featureCount,
+                key -> new SetCache(util, config.deckSize, config.setCacheSize));
+    }
+
+    /**
+     * Returns the legal sets among the given cards, from the cache if they were searched for before.
+     *
+     * @param cards - an array of distinct card ids.
+     * @param len   - the number of cards (the first len entries of cards).
+     * @return - the legal sets, each one contains sorted card ids (shared by the callers, do not modify them).
+     */
+    public int[][] sets(int[] cards, int len) {
+        Fingerprint fingerprint = new Fingerprint(cards, len, deckSize);
+        Segment segment = segments[fingerprint.hash & (segments.length - 1)];
+        int[][] sets;
+        synchronized (segment) {
+            sets = segment.get(fingerprint);
+        }
+        if (sets != null) {
+            hits.increment();
+            return sets;
+        }
+
+        misses.increment();
+        List<int[]> found = new ArrayList<>();
+        util.findSets(cards, len, Integer.MAX_VALUE, set -> found.add(set.clone()));
+        sets = found.toArray(new int[0][]);
+        synchronized (segment) {
+            segment.put(fingerprint, sets);
+        }
+        return sets;
+    }
+
+    /**
+     * @return - the number of collections of cards whose sets are in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return - the number of lookups that found the sets in the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return - the number of lookups that had to search for the sets.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return - the fraction of the lookups that found the sets in the cache (0 if there were none).
+     */
+    public double hitRate() {
+        long hits = hits(), lookups = hits + misses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * The canonical fingerprint of a collection of cards: a bitmap of their ids, so the order of the cards does not
+     * matter (two longs for the 81 cards deck).
+     */
+    public static final class Fingerprint {
+
+        private final long[] words;
+        private final int hash;
+
+        /**
+         * @param cards    - an array of card ids.
+         * @param len      - the number of cards (the first len entries of cards).
+         * @param deckSize - the number of cards in the deck.
+         */
+        public Fingerprint(int[] cards, int len, int deckSize) {
+            words = new long[(deckSize + Long.SIZE - 1) / Long.SIZE];
+            for (int i = 0; i < len; ++i)
+                words[cards[i] / Long.SIZE] |= 1L << cards[i];
+            int h = Arrays.hashCode(words);
+            hash = h ^ h >>> 16;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Fingerprint && Arrays.equals(words, ((Fingerprint) other).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A segment of the cache: a map in access order that drops its least recently used entry when it is full.
+     */
+    private static final class Segment extends LinkedHashMap<Fingerprint, int[][]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, int[][]> eldest) {
+            return size() > capacity;
+        }
+    }
+}
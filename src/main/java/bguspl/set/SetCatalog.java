@@ -0,0 +1,194 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * A precomputed catalog of all the legal sets of a deck, indexed by card, in a file that is memory-mapped (read only),
+ * so that every game process on the machine shares the same copy of it in the page cache.
+ * The file is a sequence of big-endian ints:
+ * 1. A header: MAGIC, featureSize, featureCount and the number of sets.
+ * 2. The sorted card ids of each set (featureSize ints per set).
+ * 3. The index: for each card, the offset of its first entry in the members list (deckSize + 1 ints).
+ * 4. The members list: the set numbers of the sets of each card, card after card (featureSize ints per set).
+ */
+public class SetCatalog {
+
+    /**
+     * The first int of a catalog file ("SETC").
+     */
+    public static final int MAGIC = 0x53455443;
+
+    /**
+     * The number of ints in the header of a catalog file.
+     */
+    private static final int HEADER_SIZE = 4;
+
+    /**
+     * The mapped catalog file.
+     */
+    private final IntBuffer data;
+
+    /**
+     * The number of cards in a set, and the number of sets.
+     */
+    private final int featureSize;
+    private final int setCount;
+
+    /**
+     * The offsets (in ints) of the index and of the members list in the file.
+     */
+    private final int indexOffset;
+    private final int membersOffset;
+
+    private SetCatalog(IntBuffer data, Config config) {
+        if (data.limit() < HEADER_SIZE || data.get(0) != MAGIC)
+            throw new IllegalArgumentException("not a set catalog file");
+        if (data.get(1) != config.featureSize || data.get(2) != config.featureCount)
+            throw new IllegalArgumentException("set catalog of feature size " + data.get(1) + " and feature count "
+                    + data.get(2) + " does not match the configuration");
+
+        this.data = data;
+        this.featureSize = config.featureSize;
+        this.setCount = data.get(3);
+        this.indexOffset = HEADER_SIZE + setCount * featureSize;
+        this.membersOffset = indexOffset + config.deckSize + 1;
+        if (data.limit() != membersOffset + setCount * featureSize)
+            throw new IllegalArgumentException("set catalog file is truncated");
+    }
+
+    /**
+     * Maps the catalog file of the deck, and creates it first if it does not exist.
+     *
+     * @param util   - the util used to find the sets of the deck (if the file is created).
+     * @param config - the game configuration.
+     * @param file   - the path of the catalog file.
+     * @return - the mapped catalog.
+     * @throws IOException              - if the file cannot be created or read.
+     * @throws IllegalArgumentException - if the file is not a catalog of the configured deck.
+     */
+    public static SetCatalog map(Util util, Config config, Path file) throws IOException {
+        if (!Files.exists(file)) write(util, config, file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new SetCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer(), config);
+        }
+    }
+
+    /**
+     * Finds all the legal sets of the deck and writes their catalog to a file. The catalog is written to a temporary
+     * file that is then moved in place, so that other processes never map a partly written catalog.
+     *
+     * @param util   - the util used to find the sets of the deck.
+     * @param config - the game configuration.
+     * @param file   - the path of the catalog file.
+     * @throws IOException - if the file cannot be written.
+     */
+    public static void write(Util util, Config config, Path file) throws IOException {
+        int r = config.featureSize;
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; ++card)
+            deck[card] = card;
+        int setCount = util.countSets(deck, deck.length);
+
+        int indexOffset = HEADER_SIZE + setCount * r;
+        int membersOffset = indexOffset + deck.length + 1;
+        IntBuffer data = IntBuffer.allocate(membersOffset + setCount * r);
+        data.put(MAGIC).put(r).put(config.featureCount).put(setCount);
+
+        // the sets, and the number of sets of each card
+        int[] setsOfCard = new int[deck.length];
+        util.findSets(deck, deck.length, setCount, set -> {
+            for (int card : set) {
+                data.put(card);
+                ++setsOfCard[card];
+            }
+            return true;
+        });
+
+        // the index, and then the members list (filled in set order, so the sets of each card are sorted)
+        int[] next = new int[deck.length];
+        for (int card = 0, offset = 0; card <= deck.length; ++card) {
+            data.put(indexOffset + card, offset);
+            if (card < deck.length) {
+                next[card] = offset;
+                offset += setsOfCard[card];
+            }
+        }
+        for (int set = 0; set < setCount; ++set)
+            for (int i = 0; i < r; ++i)
+                data.put(membersOffset + next[data.get(HEADER_SIZE + set * r + i)]++, set);
+
+        ByteBuffer bytes = ByteBuffer.allocate(data.capacity() * Integer.BYTES);
+        bytes.asIntBuffer().put(data.array());
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) channel.write(bytes);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return - the number of legal sets in the deck.
+     */
+    public int setCount() {
+        return setCount;
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - the number of legal sets of the deck that the card is part of.
+     */
+    public int setsWith(int card) {
+        return data.get(indexOffset + card + 1) - data.get(indexOffset + card);
+    }
+
+    /**
+     * @param card - a card id.
+     * @param i    - the index of a set of the card (less than setsWith(card)).
+     * @return - the set number of the i-th set that the card is part of.
+     */
+    public int setWith(int card, int i) {
+        return data.get(membersOffset + data.get(indexOffset + card) + i);
+    }
+
+    /**
+     * @param set - a set number (less than setCount()).
+     * @param i   - the index of a card in the set (less than featureSize).
+     * @return - the id of the i-th card of the set (the cards of a set are sorted).
+     */
+    public int card(int set, int i) {
+        return data.get(HEADER_SIZE + set * featureSize + i);
+    }
+
+    /**
+     * Writes (or rewrites) the catalog file of the configured deck to the file set by SetCatalogFile.
+     *
+     * @param args - the configuration file name (config.properties by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Logger logger = Logger.getLogger("SetGameLogger");
+        Config config = new Config(logger, args.length > 0 ? args[0] : "config.properties");
+        if (config.setCatalogFile.isEmpty()) {
+            logger.severe("SetCatalogFile is not set in the configuration.");
+            return;
+        }
+        Path file = Paths.get(config.setCatalogFile);
+        Files.deleteIfExists(file);
+        new UtilImpl(config); // creates the missing catalog file
+        logger.info("wrote the catalog of " + config.deckSize + " cards to " + file.toAbsolutePath() + ".");
+    }
+}
@@ -0,0 +1,17 @@
+package bguspl.set;
+
+/**
+ * The rule that decides whether cards form a legal set: every feature is either the same on all of them or different
+ * on all of them. UtilImpl picks the fastest implementation for the configured deck at startup (see SetRules).
+ */
+@FunctionalInterface
+public interface SetRule {
+
+    /**
+     * Checks if an array of cards forms a legal set.
+     *
+     * @param cards - an array of card ids.
+     * @return - true iff the array forms a legal set.
+     */
+    boolean test(int[] cards);
+}
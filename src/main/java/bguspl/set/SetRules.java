@@ -0,0 +1,164 @@
+package bguspl.set;
+
+/**
+ * The implementations of SetRule specialized for the common decks, with the loops over the features unrolled into
+ * constants and word operations, and the selection of the rule for a deck. Each of them only handles candidates of
+ * config.featureSize cards, and leaves any other array to the generic rule.
+ */
+final class SetRules {
+
+    /**
+     * The number of bits of a feature field in a packed card of a deck with config.featureSize == 3.
+     */
+    private static final int TRIPLE_FIELD_BITS = 3;
+
+    /**
+     * The number of feature fields checked by a single lookup in VALID_TRIPLE_SUMS.
+     */
+    private static final int TRIPLE_FIELDS_PER_LOOKUP = 4;
+    private static final int TRIPLE_LOOKUP_BITS = TRIPLE_FIELD_BITS * TRIPLE_FIELDS_PER_LOOKUP;
+    private static final long TRIPLE_LOOKUP_MASK = (1L << TRIPLE_LOOKUP_BITS) - 1;
+
+    /**
+     * Entry s is true iff every 3 bit field of s is 0, 3 or 6: the sum of the values of a feature on three cards is a
+     * multiple of 3 iff the feature is the same on all of them or different on all of them.
+     */
+    private static final boolean[] VALID_TRIPLE_SUMS = new boolean[1 << TRIPLE_LOOKUP_BITS];
+
+    static {
+        for (int sum = 0; sum < VALID_TRIPLE_SUMS.length; ++sum) {
+            boolean valid = true;
+            for (int field = 0; field < TRIPLE_FIELDS_PER_LOOKUP; ++field)
+                valid &= (sum >>> field * TRIPLE_FIELD_BITS & 7) % 3 == 0;
+            VALID_TRIPLE_SUMS[sum] = valid;
+        }
+    }
+
+    private SetRules() {}
+
+    /**
+     * Selects the fastest rule for the configured deck.
+     *
+     * @param config      - the game configuration.
+     * @param packedCards - the packed cards of the deck (fields of TRIPLE_FIELD_BITS bits when featureSize == 3).
+     * @param oneHotCards - the one-hot cards of the deck (groups of featureSize bits).
+     * @param oneHotWords - the number of longs of a one-hot card.
+     * @param generic     - the rule for any deck and any number of cards.
+     * @return - the rule of the deck.
+     */
+    static SetRule select(Config config, long[] packedCards, long[] oneHotCards, int oneHotWords, SetRule generic) {
+        int featureSize = config.featureSize;
+        int featureCount = config.featureCount;
+        if (featureSize == 2)
+            return new PairRule(generic);
+        if (featureSize == 3 && featureCount <= TRIPLE_FIELDS_PER_LOOKUP)
+            return new ClassicRule(packedCards, generic);
+        if (featureSize == 3 && featureCount * TRIPLE_FIELD_BITS < Long.SIZE)
+            return new TripleRule(packedCards, featureCount, generic);
+        if (featureSize == 4 && oneHotWords == 1)
+            return new QuadRule(oneHotCards, featureCount, generic);
+        return generic;
+    }
+
+    /**
+     * The rule of decks with 2 values per feature: any two cards are the same or different on every feature.
+     */
+    private static final class PairRule implements SetRule {
+
+        private final SetRule generic;
+
+        private PairRule(SetRule generic) {
+            this.generic = generic;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            return cards.length == 2 || generic.test(cards);
+        }
+    }
+
+    /**
+     * The rule of decks with 3 values per feature and up to 4 features (the classic 81 cards deck): the packed sum of
+     * the three cards is checked by a single lookup.
+     */
+    private static final class ClassicRule implements SetRule {
+
+        private final long[] packedCards;
+        private final SetRule generic;
+
+        private ClassicRule(long[] packedCards, SetRule generic) {
+            this.packedCards = packedCards;
+            this.generic = generic;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            if (cards.length != 3) return generic.test(cards);
+            return VALID_TRIPLE_SUMS[(int) (packedCards[cards[0]] + packedCards[cards[1]] + packedCards[cards[2]])];
+        }
+    }
+
+    /**
+     * The rule of decks with 3 values per feature and more than 4 features: the packed sum of the three cards is
+     * checked 4 features per lookup.
+     */
+    private static final class TripleRule implements SetRule {
+
+        private final long[] packedCards;
+        private final int lookups;
+        private final SetRule generic;
+
+        private TripleRule(long[] packedCards, int featureCount, SetRule generic) {
+            this.packedCards = packedCards;
+            this.lookups = (featureCount + TRIPLE_FIELDS_PER_LOOKUP - 1) / TRIPLE_FIELDS_PER_LOOKUP;
+            this.generic = generic;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            if (cards.length != 3) return generic.test(cards);
+            long sum = packedCards[cards[0]] + packedCards[cards[1]] + packedCards[cards[2]];
+            boolean valid = true;
+            for (int i = 0; i < lookups; ++i, sum >>>= TRIPLE_LOOKUP_BITS)
+                valid &= VALID_TRIPLE_SUMS[(int) (sum & TRIPLE_LOOKUP_MASK)];
+            return valid;
+        }
+    }
+
+    /**
+     * The rule of decks with 4 values per feature and up to 16 features: the one-hot cards of the four cards are
+     * OR-ed into a single long, and all its 4 bit groups are checked at once to have a single bit (the same value on
+     * all the cards) or all 4 bits (a different value on each card).
+     */
+    private static final class QuadRule implements SetRule {
+
+        private final long[] oneHotCards;
+
+        /**
+         * The lowest bit of every group of a feature.
+         */
+        private final long groupOnes;
+
+        private final SetRule generic;
+
+        private QuadRule(long[] oneHotCards, int featureCount, SetRule generic) {
+            this.oneHotCards = oneHotCards;
+            long ones = 0;
+            for (int i = 0; i < featureCount; ++i)
+                ones |= 1L << (i * 4);
+            this.groupOnes = ones;
+            this.generic = generic;
+        }
+
+        @Override
+        public boolean test(int[] cards) {
+            if (cards.length != 4) return generic.test(cards);
+            long values = oneHotCards[cards[0]] | oneHotCards[cards[1]] | oneHotCards[cards[2]] | oneHotCards[cards[3]];
+
+            // every group has a bit set, so subtracting 1 from each one never borrows from the next group
+            long multiple = values & (values - groupOnes); // the groups with more than one bit
+            long full = values & values >>> 1 & values >>> 2 & values >>> 3 & groupOnes; // the groups with 4 bits
+            return (multiple & ~(full * 0xF)) == 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package bguspl.set;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The real time clock: the time of the system, and the waits of the JDK.
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException {
+        return queue.poll(millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public <T> void put(BlockingQueue<T> queue, T element) throws InterruptedException {
+        queue.put(element);
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    @Override
+    public void await(Object monitor, BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) monitor.wait();
+    }
+
+    @Override
+    public void register(Thread thread) {}
+}
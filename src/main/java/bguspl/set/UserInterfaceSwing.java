@@ -23,14 +23,12 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final Util util;
 
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
-
-    public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+    public UserInterfaceSwing(Logger logger, Config config, Util util, Player[] players) {
 
         this.config = config;
+        this.util = util;
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -115,6 +113,14 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             return new ImageIcon(imageResource).getImage();
         }
 
+        private String cardImageName(int card) {
+            // the features of the card, a digit each
+            StringBuilder name = new StringBuilder("cards/");
+            for (int i = 0; i < config.featureCount; ++i)
+                name.append(Character.forDigit(util.feature(card, i), config.featureSize));
+            return name.append(".png").toString();
+        }
+
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
@@ -125,7 +131,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             // load the image resources
             deck = new Image[config.deckSize];
             for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
+                deck[i] = loadImageResource(cardImageName(i));
             emptyCard = loadImageResource("cards/empty_card.png");
 
             grid = new Image[config.rows][config.columns];
@@ -23,6 +23,31 @@ public interface Util {
      */
     int[][] cardsToFeatures(int[] cards);
 
+    /**
+     * Converts an array of card ids to features into a reusable buffer (see cardToFeatures method).
+     *
+     * @param cards    - an array of card ids.
+     * @param features - a 2d array of at least cards.length rows of config.featureCount features to fill (respectively).
+     */
+    void cardsToFeatures(int[] cards, int[][] features);
+
+    /**
+     * Converts a card id to features into a reusable buffer (see cardToFeatures method).
+     *
+     * @param card     - the card id.
+     * @param features - an array of at least config.featureCount features to fill.
+     */
+    void cardToFeatures(int card, int[] features);
+
+    /**
+     * Reads a single feature of a card, without allocating (see cardToFeatures method).
+     *
+     * @param card    - the card id.
+     * @param feature - the index of the feature (between 0 and config.featureCount - 1).
+     * @return - the value of the feature.
+     */
+    int feature(int card, int feature);
+
     /**
      * Checks if an array of cards forms a legal set.
      *
@@ -31,6 +56,26 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks a batch of candidate sets in one pass. The candidates are laid out as a struct of arrays: card j of
+     * candidate i is cards[j * count + i].
+     *
+     * @param cards   - the cards of the candidates (config.featureSize * count entries).
+     * @param count   - the number of candidates.
+     * @param results - a bitmap to fill, of at least (count + 63) / 64 words: bit i % 64 of results[i / 64] is set
+     *                iff candidate i forms a legal set.
+     */
+    void testSets(int[] cards, int count, long[] results);
+
+    /**
+     * Finds the only card that completes the given cards to a legal set: in each feature it has the value shared
+     * by all the cards, or the single value none of them has.
+     *
+     * @param cards - an array of config.featureSize - 1 distinct cards.
+     * @return - the card id that completes the set, or -1 if the cards are not part of any legal set.
+     */
+    int completeSet(int[] cards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +85,47 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds up to count sets in the given cards and passes them to the sink, without allocating.
+     *
+     * @param cards - an array of distinct card ids.
+     * @param len   - the number of cards to search in (the first len entries of cards).
+     * @param count - the maximum number of sets to find.
+     * @param sink  - the consumer of the sets (must not start another search on the same thread).
+     * @return - the number of sets passed to the sink.
+     */
+    int findSets(int[] cards, int len, int count, IntSetSink sink);
+
+    /**
+     * Checks if there is at least one legal set in the given cards (stops at the first set found).
+     *
+     * @param cards - an array of distinct card ids.
+     * @param len   - the number of cards to search in (the first len entries of cards).
+     * @return - true iff the cards include a legal set.
+     */
+    boolean hasSet(int[] cards, int len);
+
+    /**
+     * Counts the legal sets in the given cards, without building them.
+     *
+     * @param cards - an array of distinct card ids.
+     * @param len   - the number of cards to search in (the first len entries of cards).
+     * @return - the number of legal sets in the cards.
+     */
+    int countSets(int[] cards, int len);
+
+    /**
+     * Finds the legal sets that the given card forms with cards of the given array and passes them to the sink,
+     * without allocating.
+     *
+     * @param card  - a card id.
+     * @param cards - an array of distinct card ids (the card itself is ignored if it is there).
+     * @param len   - the number of cards to search in (the first len entries of cards).
+     * @param sink  - the consumer of the sets (must not start another search on the same thread).
+     * @return - the number of sets passed to the sink.
+     */
+    int findSetsWith(int card, int[] cards, int len, IntSetSink sink);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
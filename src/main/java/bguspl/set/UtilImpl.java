@@ -1,29 +1,196 @@
 package bguspl.set;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The implementation of the UserInterface interface.
  */
 public class UtilImpl implements Util {
 
+    /**
+     * The largest deck for which a third card completion table is built (its size is deckSize ^ 2).
+     */
+    private static final int MAX_COMPLETION_TABLE_DECK_SIZE = 729;
+
+    /**
+     * The number of fork/join tasks per worker thread a parallel set search is split into (for load balancing).
+     */
+    private static final int PARALLEL_TASKS_PER_THREAD = 8;
+
+    /**
+     * The completion tables built so far, shared by every game in the JVM (keyed by featureSize and featureCount).
+     */
+    private static final Map<Long, short[]> completionTables = new ConcurrentHashMap<>();
+
+    /**
+     * The feature matrices built so far, shared by every game in the JVM (keyed by featureSize and featureCount).
+     */
+    private static final Map<Long, byte[]> featureMatrices = new ConcurrentHashMap<>();
+
     private final Config config;
 
+    /**
+     * The features of every card: feature i of card c is entry c * featureCount + i (each fits in a byte, as
+     * config.featureSize <= 64).
+     */
+    private final byte[] featureMatrix;
+
+    /**
+     * The number of bits of each feature field in a packed card (wide enough to hold the sum of a set's values).
+     */
+    private final int fieldBits;
+
+    /**
+     * A mask of the lowest feature field in a packed card.
+     */
+    private final long fieldMask;
+
+    /**
+     * A bitmask of the feature sums that are a multiple of config.featureSize (bit s is set iff s is such a sum).
+     */
+    private final long validSums;
+
+    /**
+     * The packed representation of each card: feature i of the card is stored in bits [i * fieldBits, (i + 1) * fieldBits).
+     */
+    private final long[] packedCards;
+
+    /**
+     * The number of longs of a one-hot card, and the number of feature groups in each long (a group of
+     * config.featureSize bits never crosses longs).
+     */
+    private final int oneHotWords;
+    private final int groupsPerWord;
+
+    /**
+     * A mask of the lowest feature group in a long of a one-hot card.
+     */
+    private final long groupMask;
+
+    /**
+     * The one-hot representation of each card: the value v of feature i sets bit (i % groupsPerWord) * featureSize + v
+     * of long i / groupsPerWord. Card c takes the longs [c * oneHotWords, (c + 1) * oneHotWords).
+     */
+    private final long[] oneHotCards;
+
+    /**
+     * The third card completion table (for config.featureSize == 3 only): entry first * deckSize + second holds the
+     * only card that forms a set with the cards first and second. Null if the deck is too large for a table.
+     */
+    private final short[] completionTable;
+
+    /**
+     * The rule that tests sets, specialized for the deck (see SetRules).
+     */
+    private final SetRule setRule;
+
+    /**
+     * The memory-mapped catalog of all the sets of the deck (null if config.setCatalogFile is not set).
+     */
+    private final SetCatalog catalog;
+
+    /**
+     * The reusable buffers of the primitive set searches of each thread.
+     */
+    private final ThreadLocal<SearchBuffers> searchBuffers = ThreadLocal.withInitial(SearchBuffers::new);
+
     public UtilImpl(Config config) {
+        if (config.featureSize > Long.SIZE)
+            throw new IllegalArgumentException("feature size " + config.featureSize + " is larger than " + Long.SIZE);
         this.config = config;
-    }
+        long deckKey = (long) config.featureSize << Integer.SIZE | config.featureCount;
+        featureMatrix = featureMatrices.computeIfAbsent(deckKey, key -> buildFeatureMatrix());
+
+        int maxSum = config.featureSize * (config.featureSize - 1);
+        fieldBits = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxSum));
+        fieldMask = (1L << fieldBits) - 1;
 
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
+        long sums = 0;
+        for (int sum = 0; sum <= maxSum && sum < Long.SIZE; sum += config.featureSize)
+            sums |= 1L << sum;
+        validSums = sums;
+
+        groupsPerWord = Long.SIZE / config.featureSize;
+        oneHotWords = (config.featureCount + groupsPerWord - 1) / groupsPerWord;
+        groupMask = config.featureSize == Long.SIZE ? -1L : (1L << config.featureSize) - 1;
+
+        packedCards = new long[config.deckSize];
+        oneHotCards = new long[config.deckSize * oneHotWords];
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = 0; i < config.featureCount; ++i) {
+                int value = feature(card, i);
+                packedCards[card] |= (long) value << (i * fieldBits);
+                oneHotCards[card * oneHotWords + i / groupsPerWord] |= 1L << (i % groupsPerWord * config.featureSize + value);
+            }
+
+        setRule = SetRules.select(config, packedCards, oneHotCards, oneHotWords, this::testSetByOneHot);
+
+        if (config.featureSize == 3 && config.deckSize <= MAX_COMPLETION_TABLE_DECK_SIZE)
+            completionTable = completionTables.computeIfAbsent(deckKey, key -> buildCompletionTable());
+        else completionTable = null;
+
+        // last, as the catalog is created by searching for the sets of the deck if its file does not exist yet
+        if (config.setCatalogFile.isEmpty()) catalog = null;
+        else try {
+            catalog = SetCatalog.map(this, config, Paths.get(config.setCatalogFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot map set catalog file " + config.setCatalogFile, e);
         }
     }
 
+    /**
+     * Builds the feature matrix of the deck: the digits of each card id in base config.featureSize, most significant
+     * first.
+     *
+     * @return - the feature matrix (see featureMatrix).
+     */
+    private byte[] buildFeatureMatrix() {
+        byte[] matrix = new byte[config.deckSize * config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = config.featureCount - 1, id = card; i >= 0; --i) {
+                matrix[card * config.featureCount + i] = (byte) (id % config.featureSize);
+                id /= config.featureSize;
+            }
+        return matrix;
+    }
+
+    /**
+     * Builds the third card completion table of the deck.
+     *
+     * @return - the completion table (see completionTable).
+     */
+    private short[] buildCompletionTable() {
+        short[] table = new short[config.deckSize * config.deckSize];
+        for (int first = 0; first < config.deckSize; ++first)
+            for (int second = 0; second < config.deckSize; ++second)
+                table[first * config.deckSize + second] = (short) computeThirdCard(first, second);
+        return table;
+    }
+
+    @Override
+    public void cardToFeatures(int card, int[] features) {
+        int offset = card * config.featureCount;
+        for (int i = 0; i < config.featureCount; ++i)
+            features[i] = featureMatrix[offset + i];
+    }
+
+    @Override
+    public int feature(int card, int feature) {
+        return featureMatrix[card * config.featureCount + feature];
+    }
+
     @Override
     public int[] cardToFeatures(int card) {
         int[] features = new int[config.featureCount];
@@ -34,60 +201,528 @@ public class UtilImpl implements Util {
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        cardsToFeatures(cards, features);
         return features;
     }
 
+    @Override
+    public void cardsToFeatures(int[] cards, int[][] features) {
+        for (int i = 0; i < cards.length; ++i)
+            cardToFeatures(cards[i], features[i]);
+    }
+
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
+        return setRule.test(cards);
+    }
+
+    @Override
+    public void testSets(int[] cards, int count, long[] results) {
+        Arrays.fill(results, 0, (count + Long.SIZE - 1) / Long.SIZE, 0L);
+        SearchBuffers buffers = acquireSearchBuffers();
+        try {
+            if (config.featureSize != 3) {
+                int[] set = buffers.set;
+                for (int i = 0; i < count; ++i) {
+                    for (int j = 0; j < set.length; ++j)
+                        set[j] = cards[j * count + i];
+                    if (testSet(set)) results[i / Long.SIZE] |= 1L << i;
                 }
+                return;
+            }
+
+            // sum the packed cards of each candidate, then check the sums one field at a time (see validSums),
+            // in simple loops over the candidates that the JIT compiler can vectorize
+            long[] sums = buffers.batchSums(count);
+            long[] valid = buffers.batchValid(count);
+            for (int i = 0; i < count; ++i)
+                sums[i] = packedCards[cards[i]] + packedCards[cards[count + i]] + packedCards[cards[2 * count + i]];
+            Arrays.fill(valid, 0, count, 1L);
+            for (int f = 0, shift = 0; f < config.featureCount; ++f, shift += fieldBits)
+                for (int i = 0; i < count; ++i)
+                    valid[i] &= validSums >>> (sums[i] >>> shift & fieldMask);
+            for (int i = 0; i < count; ++i)
+                results[i / Long.SIZE] |= (valid[i] & 1) << i;
+        } finally {
+            buffers.inUse = false;
+        }
+    }
 
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+    @Override
+    public int completeSet(int[] cards) {
+        if (cards.length != config.featureSize - 1) return -1;
+        if (config.featureSize == 3) return thirdCard(cards[0], cards[1]);
+
+        int card = 0;
+        for (int word = 0, feature = 0; word < oneHotWords; ++word) {
+            long values = 0; // the values of the features of this word in the cards
+            for (int c : cards)
+                values |= oneHotCards[c * oneHotWords + word];
 
-            if (sameSame == butDifferent) return false;
+            for (int group = 0; group < groupsPerWord && feature < config.featureCount; ++group, ++feature) {
+                long groupValues = values >>> (group * config.featureSize) & groupMask;
+                int distinct = Long.bitCount(groupValues);
+                if (distinct == 1) card = card * config.featureSize + Long.numberOfTrailingZeros(groupValues);
+                else if (distinct == cards.length) card = card * config.featureSize + Long.numberOfTrailingZeros(~groupValues);
+                else return -1;
+            }
         }
-        return true;
+        return card;
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set using the one-hot cards (the generic SetRule): the values of a feature on all the
+     * cards are OR-ed together into its group, which then has a single bit set iff the feature is the same on all
+     * of them, or a bit per card iff it is different on all of them.
+     *
+     * @param cards - the array of cards.
+     * @return - true iff the array forms a legal set.
+     */
+    private boolean testSetByOneHot(int[] cards) {
+        boolean valid = true;
+        for (int word = 0, feature = 0; word < oneHotWords; ++word) {
+            long values = 0;
+            for (int card : cards)
+                values |= oneHotCards[card * oneHotWords + word];
+
+            for (int group = 0; group < groupsPerWord && feature < config.featureCount; ++group, ++feature) {
+                int distinct = Long.bitCount(values >>> (group * config.featureSize) & groupMask);
+                valid &= distinct == 1 | distinct == cards.length;
+            }
+        }
+        return valid;
     }
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
-        int r = config.featureSize;
-        int[] combination = new int[r];
-
-        for (int i = 0; i < r; ++i)
-            combination[i] = i;
-
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+        List<int[]> sets = new ArrayList<>();
+        findSets(cards, cards.length, Math.max(1, count), set -> sets.add(set.clone())); // at least one set if there is any
+        return sets;
+    }
+
+    @Override
+    public int findSets(int[] cards, int len, int count, IntSetSink sink) {
+        return search(cards, len, count, sink);
+    }
+
+    /**
+     * Finds the sets among the given cards. A search for all the sets runs in parallel if config.parallelSetSearch is
+     * on and there are enough cards (a search for a few sets stops early anyway, and finds the first ones in order).
+     *
+     * @param sink - receives the sets (null to only count them).
+     * @return - the number of sets found (and passed to the sink, if there is one).
+     */
+    private int search(int[] cards, int len, int count, IntSetSink sink) {
+        if (count == Integer.MAX_VALUE && config.parallelSetSearch && len >= config.parallelSetSearchThreshold)
+            return searchInParallel(cards, len, sink);
+
+        SearchBuffers buffers = acquireSearchBuffers();
+        int[] position = buffers.position;
+        for (int i = 0; i < len; ++i)
+            position[cards[i]] = i;
+        try {
+            return searchRange(cards, len, position, 0, len, count, sink, buffers);
+        } finally {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = -1;
+            buffers.inUse = false;
+        }
+    }
+
+    /**
+     * Searches for all the sets in fork/join tasks split by the position of the first card of the sets (see
+     * SetSearch), and passes the sets they found to the sink in order.
+     *
+     * @param sink - receives the sets (null to only count them).
+     * @return - the number of sets found (and passed to the sink, if there is one).
+     */
+    private int searchInParallel(int[] cards, int len, IntSetSink sink) {
+        int grain = len / (ForkJoinPool.getCommonPoolParallelism() * PARALLEL_TASKS_PER_THREAD);
+        SetSearch search = new SetSearch(cards, len, positions(cards, len), sink != null, grain);
+        LinkedList<int[]> sets = ForkJoinPool.commonPool().invoke(search);
+        if (sink == null) return search.found.get();
+
+        int found = 0;
+        for (int[] set : sets) {
+            ++found;
+            if (!sink.accept(set)) break;
+        }
+        return found;
+    }
+
+    /**
+     * Finds the sets whose first card (by position in the cards) is in the range [from, to), in lexicographic order.
+     * For config.featureSize >= 3 it completes combinations of featureSize - 1 cards: they determine at most one last
+     * card that forms a set with them (for 3, the third card of a pair), so instead of testing every combination of
+     * featureSize cards we compute that card and look up its position. Otherwise it tests every combination of
+     * config.featureSize cards.
+     *
+     * @param position - the position of each card of the deck in the cards, or -1 if it is not there.
+     * @param sink     - receives the sets (null to only count them).
+     * @return - the number of sets found in the range.
+     */
+    private int searchRange(int[] cards, int len, int[] position, int from, int to, int count, IntSetSink sink,
+                            SearchBuffers buffers) {
+        boolean complete = config.featureSize >= 3;
+        int k = complete ? config.featureSize - 1 : config.featureSize;
+        int n = complete ? len - 1 : len; // leave room for the completing card
+        int[] combination = buffers.combination;
+        int[] set = buffers.set;
+        int[] candidate = complete ? buffers.candidate : set;
+
+        int found = 0;
+        for (int i = 0; i < k; ++i)
+            combination[i] = from + i;
+        while (combination[0] < to && combination[k - 1] < n) {
+            for (int i = 0; i < k; ++i)
+                candidate[i] = cards[combination[i]];
+            boolean isSet;
+            if (complete) {
+                int last = completeSet(candidate);
+                isSet = last >= 0 && position[last] > combination[k - 1]; // each set is found once, from its first featureSize - 1 cards
+                if (isSet && sink != null) {
+                    System.arraycopy(candidate, 0, set, 0, k);
+                    set[k] = last;
+                }
+            } else isSet = testSet(candidate);
+
+            if (isSet) {
+                ++found;
+                if (sink != null) {
+                    Arrays.sort(set);
+                    if (!sink.accept(set)) return found;
+                }
+                if (found >= count) return found;
             }
+            nextCombination(combination, k, n);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean hasSet(int[] cards, int len) {
+        return findSets(cards, len, 1, set -> false) > 0;
+    }
+
+    @Override
+    public int countSets(int[] cards, int len) {
+        if (catalog != null && len == config.deckSize) return catalog.setCount(); // the cards are the whole deck
+        return search(cards, len, Integer.MAX_VALUE, null);
+    }
+
+    @Override
+    public int findSetsWith(int card, int[] cards, int len, IntSetSink sink) {
+        int m = config.featureSize - 2; // the number of other cards to choose before completing the set
+        if (catalog != null && catalog.setsWith(card) <= binomial(len, Math.max(1, m)))
+            return findSetsWithInCatalog(card, cards, len, sink);
+        if (m < 1) return findPairsWith(card, cards, len, sink);
+
+        SearchBuffers buffers = acquireSearchBuffers();
+        int[] position = buffers.position;
+        int[] combination = buffers.combination;
+        int[] candidate = buffers.candidate;
+        int[] set = buffers.set;
+        for (int i = 0; i < len; ++i)
+            if (cards[i] != card) position[cards[i]] = i;
+
+        int found = 0;
+        try {
+            candidate[0] = card;
+            for (int i = 0; i < m; ++i)
+                combination[i] = i;
 
-            // generate next combination in lexicographic order
-            int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
-            combination[t]++;
-            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+            while (combination[m - 1] < len) {
+                // every set is found once: from its m smallest other cards, completed to its largest card
+                int max = -1;
+                for (int i = 0; i < m; ++i) {
+                    candidate[i + 1] = cards[combination[i]];
+                    max = candidate[i + 1] == card ? config.deckSize : Math.max(max, candidate[i + 1]);
+                }
+                int last = max < config.deckSize ? completeSet(candidate) : -1;
+                if (last > max && position[last] >= 0) {
+                    System.arraycopy(candidate, 0, set, 0, candidate.length);
+                    set[candidate.length] = last;
+                    Arrays.sort(set);
+                    ++found;
+                    if (!sink.accept(set)) return found;
+                }
+
+                nextCombination(combination, m, len);
+            }
+            return found;
+        } finally {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = -1;
+            buffers.inUse = false;
         }
-        return sets;
+    }
+
+    /**
+     * Finds the sets that the given card is part of by reading them from the catalog, when it has fewer sets of the
+     * card than there are combinations of other cards to complete (e.g. in a deck that is still mostly full).
+     *
+     * @return - the number of sets passed to the sink.
+     */
+    private int findSetsWithInCatalog(int card, int[] cards, int len, IntSetSink sink) {
+        SearchBuffers buffers = acquireSearchBuffers();
+        int[] position = buffers.position;
+        int[] set = buffers.set;
+        for (int i = 0; i < len; ++i)
+            position[cards[i]] = i;
+
+        int found = 0;
+        try {
+            for (int i = 0, sets = catalog.setsWith(card); i < sets; ++i) {
+                int number = catalog.setWith(card, i);
+                boolean inCards = true;
+                for (int j = 0; j < set.length && inCards; ++j) {
+                    set[j] = catalog.card(number, j);
+                    inCards = set[j] == card || position[set[j]] >= 0;
+                }
+                if (inCards) {
+                    ++found;
+                    if (!sink.accept(set)) return found;
+                }
+            }
+            return found;
+        } finally {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = -1;
+            buffers.inUse = false;
+        }
+    }
+
+    /**
+     * Advances a combination of k positions out of [0, n) to the next one in lexicographic order. After the last
+     * combination, the last position is n or more (so that loops over the combinations end).
+     *
+     * @param combination - the positions, in increasing order (the first k entries).
+     * @param k           - the number of positions in the combination.
+     * @param n           - the number of positions to choose from.
+     */
+    private static void nextCombination(int[] combination, int k, int n) {
+        int t = k - 1;
+        while (t != 0 && combination[t] == n - k + t) --t;
+        combination[t]++;
+        for (int i = t + 1; i < k; i++) combination[i] = combination[i - 1] + 1;
+    }
+
+    /**
+     * Computes the binomial coefficient n choose k, up to Integer.MAX_VALUE.
+     */
+    private static long binomial(int n, int k) {
+        long c = 1;
+        for (int i = 0; i < k && c > 0 && c < Integer.MAX_VALUE; ++i)
+            c = c * (n - i) / (i + 1);
+        return Math.max(0, c);
+    }
+
+    /**
+     * Finds the sets of 2 cards that the given card is part of (for config.featureSize == 2, where a single card
+     * does not determine the card that completes it).
+     *
+     * @return - the number of sets passed to the sink.
+     */
+    private int findPairsWith(int card, int[] cards, int len, IntSetSink sink) {
+        if (config.featureSize != 2) return 0;
+        SearchBuffers buffers = acquireSearchBuffers();
+        int[] set = buffers.set;
+        int found = 0;
+        try {
+            for (int i = 0; i < len; ++i) {
+                set[0] = Math.min(card, cards[i]);
+                set[1] = Math.max(card, cards[i]);
+                if (cards[i] != card && testSet(set)) {
+                    ++found;
+                    if (!sink.accept(set)) return found;
+                }
+            }
+            return found;
+        } finally {
+            buffers.inUse = false;
+        }
+    }
+
+    /**
+     * Reusable buffers of the primitive set searches.
+     */
+    private class SearchBuffers {
+
+        /**
+         * The position of each card in the searched cards, or -1 if it is not there (all -1 between searches).
+         */
+        private final int[] position = new int[config.deckSize];
+
+        /**
+         * The set passed to the sink, the current combination and a candidate to complete to a set.
+         */
+        private final int[] set = new int[config.featureSize];
+        private final int[] combination = new int[config.featureSize];
+        private final int[] candidate = new int[config.featureSize - 1];
+
+        /**
+         * The packed sums and the validity of a batch of candidate sets (grown as needed).
+         */
+        private long[] sums = new long[0];
+        private long[] valid = new long[0];
+
+        /**
+         * True iff a search on this thread is using the buffers.
+         */
+        private boolean inUse;
+
+        private SearchBuffers() {
+            Arrays.fill(position, -1);
+        }
+
+        private long[] batchSums(int count) {
+            if (sums.length < count) sums = new long[count];
+            return sums;
+        }
+
+        private long[] batchValid(int count) {
+            if (valid.length < count) valid = new long[count];
+            return valid;
+        }
+    }
+
+    /**
+     * Takes the search buffers of the current thread (or new ones, if a search on this thread is already using them).
+     *
+     * @return - the search buffers, to be released by resetting their inUse flag.
+     */
+    private SearchBuffers acquireSearchBuffers() {
+        SearchBuffers buffers = searchBuffers.get();
+        if (buffers.inUse) buffers = new SearchBuffers();
+        buffers.inUse = true;
+        return buffers;
+    }
+
+    /**
+     * Maps each card of the deck to its position in the given cards (only needed to look up completing cards).
+     *
+     * @param cards - the cards.
+     * @param len   - the number of cards (the first len entries of cards).
+     * @return - the position of each card in cards, or -1 if it is not there (null if config.featureSize < 3).
+     */
+    private int[] positions(int[] cards, int len) {
+        if (config.featureSize < 3) return null;
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < len; ++i)
+            position[cards[i]] = i;
+        return position;
+    }
+
+    /**
+     * A search for sets in a range of the cards: it finds the sets whose first card (by position in the cards) is in
+     * the range [from, to). Ranges larger than the grain are split in two and searched as fork/join subtasks, which
+     * add up the number of sets they found.
+     */
+    private class SetSearch extends RecursiveTask<LinkedList<int[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The cards to search in, and the position of each card of the deck in them (see positions).
+         */
+        private final int[] cards;
+        private final int len;
+        private final int[] position;
+
+        /**
+         * The number of sets found so far by all the subtasks.
+         */
+        private final AtomicInteger found;
+
+        /**
+         * True iff the found sets are collected (otherwise they are only counted).
+         */
+        private final boolean collect;
+
+        /**
+         * The range of first card positions of this search, and the range size under which it is not split.
+         */
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private SetSearch(int[] cards, int len, int[] position, boolean collect, int grain) {
+            this.cards = cards;
+            this.len = len;
+            this.position = position;
+            this.found = new AtomicInteger();
+            this.collect = collect;
+            this.from = 0;
+            this.to = len;
+            this.grain = Math.max(1, grain);
+        }
+
+        private SetSearch(SetSearch parent, int from, int to) {
+            this.cards = parent.cards;
+            this.len = parent.len;
+            this.position = parent.position;
+            this.found = parent.found;
+            this.collect = parent.collect;
+            this.from = from;
+            this.to = to;
+            this.grain = parent.grain;
+        }
+
+        @Override
+        protected LinkedList<int[]> compute() {
+            if (to - from <= grain) {
+                LinkedList<int[]> sets = new LinkedList<>();
+                IntSetSink collector = collect ? set -> sets.add(set.clone()) : null;
+                SearchBuffers buffers = acquireSearchBuffers();
+                try {
+                    found.addAndGet(searchRange(cards, len, position, from, to, Integer.MAX_VALUE, collector, buffers));
+                } finally {
+                    buffers.inUse = false;
+                }
+                return sets;
+            }
+
+            int middle = (from + to) >>> 1;
+            SetSearch left = new SetSearch(this, from, middle);
+            left.fork();
+            LinkedList<int[]> rightSets = new SetSearch(this, middle, to).compute();
+            LinkedList<int[]> sets = left.join();
+            sets.addAll(rightSets);
+            return sets;
+        }
+    }
+
+    /**
+     * Returns the only card that forms a set with the two given cards (for config.featureSize == 3 only), from the
+     * completion table if there is one.
+     *
+     * @param first  - the first card id.
+     * @param second - the second card id.
+     * @return - the card id of the third card.
+     */
+    private int thirdCard(int first, int second) {
+        if (completionTable != null) return completionTable[first * config.deckSize + second];
+        return computeThirdCard(first, second);
+    }
+
+    /**
+     * Computes the only card that forms a set with the two given cards (for config.featureSize == 3 only).
+     * In each feature the three values must sum to 0 modulo 3, so the missing value is -(first + second) mod 3.
+     *
+     * @param first  - the first card id.
+     * @param second - the second card id.
+     * @return - the card id of the third card.
+     */
+    private int computeThirdCard(int first, int second) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= config.featureSize) {
+            third += (2 * config.featureSize - first % config.featureSize - second % config.featureSize) % config.featureSize * weight;
+            first /= config.featureSize;
+            second /= config.featureSize;
+        }
+        return third;
     }
 
     public void spin() {
@@ -0,0 +1,170 @@
+package bguspl.set;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A virtual clock, for running the game faster than real time: the time stands still while any registered game thread
+ * works, and jumps straight to the next deadline once all of them wait (and none of them can go on without it).
+ * The waiting threads wake up every slice of real time to check their condition, so they also notice the changes made
+ * by threads that do not use the clock (e.g. key presses from the user interface).
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The real time a waiting thread waits before it checks its condition again (in milliseconds).
+     */
+    private static final long SLICE_MILLIS = 1;
+
+    /**
+     * The lock of the clock, that the threads that wait for time to pass wait on.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The current virtual time (changed only while holding the lock).
+     */
+    private volatile long now;
+
+    /**
+     * The registered game threads, and the waits of the threads that are waiting (guarded by the lock).
+     */
+    private final Set<Thread> threads = new HashSet<>();
+    private final Map<Thread, Wait> waits = new HashMap<>();
+
+    /**
+     * A wait of a thread: the condition it waits for, and the time it waits until.
+     */
+    private static final class Wait {
+        final BooleanSupplier condition;
+        final long deadline;
+
+        Wait(BooleanSupplier condition, long deadline) {
+            this.condition = condition;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * @param startMillis - the time the clock starts at, in milliseconds.
+     */
+    public VirtualClock(long startMillis) {
+        now = startMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        long deadline = deadline(millis);
+        while (now < deadline) waitOnce(() -> false, deadline, lock);
+    }
+
+    @Override
+    public <T> T poll(BlockingQueue<T> queue, long millis) throws InterruptedException {
+        long deadline = deadline(millis);
+        T element;
+        while ((element = queue.poll()) == null && now < deadline) waitOnce(() -> !queue.isEmpty(), deadline, lock);
+        return element;
+    }
+
+    @Override
+    public <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        T element;
+        while ((element = queue.poll()) == null) waitOnce(() -> !queue.isEmpty(), Long.MAX_VALUE, lock);
+        return element;
+    }
+
+    @Override
+    public <T> void put(BlockingQueue<T> queue, T element) throws InterruptedException {
+        while (!queue.offer(element)) waitOnce(() -> queue.remainingCapacity() > 0, Long.MAX_VALUE, lock);
+    }
+
+    @Override
+    public <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        while (!future.isDone()) waitOnce(future::isDone, Long.MAX_VALUE, lock);
+        return future.join();
+    }
+
+    @Override
+    public void await(Object monitor, BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) waitOnce(condition, Long.MAX_VALUE, monitor);
+    }
+
+    @Override
+    public void register(Thread thread) {
+        synchronized (lock) {
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * @param millis - a time to wait, in milliseconds.
+     * @return - the time the wait ends at.
+     */
+    private long deadline(long millis) {
+        long current = now;
+        return millis >= Long.MAX_VALUE - current ? Long.MAX_VALUE : current + Math.max(0, millis);
+    }
+
+    /**
+     * Waits on a monitor (that the thread holds) for one slice of real time, or until the time is advanced, as a
+     * thread that waits for a condition or for a deadline. Advances the time first if this thread is the last one to
+     * wait.
+     *
+     * @param condition - the condition the thread waits for.
+     * @param deadline  - the time the thread waits until (Long.MAX_VALUE if it waits only for the condition).
+     * @param monitor   - the monitor to wait on (the lock of the clock, or a monitor held by the thread).
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    private void waitOnce(BooleanSupplier condition, long deadline, Object monitor) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        synchronized (lock) {
+            waits.put(thread, new Wait(condition, deadline));
+            advanceIfAllWait();
+        }
+        try {
+            if (monitor == lock) {
+                synchronized (lock) {
+                    if (now < deadline && !condition.getAsBoolean()) lock.wait(SLICE_MILLIS);
+                }
+            } else {
+                monitor.wait(SLICE_MILLIS);
+            }
+        } finally {
+            synchronized (lock) {
+                waits.remove(thread);
+            }
+        }
+    }
+
+    /**
+     * Advances the time to the nearest deadline if every live registered thread waits, and none of them can go on
+     * (its condition does not hold and its deadline did not pass). Called while holding the lock.
+     */
+    private void advanceIfAllWait() {
+        long next = Long.MAX_VALUE;
+        for (Iterator<Thread> iterator = threads.iterator(); iterator.hasNext(); ) {
+            Thread thread = iterator.next();
+            if (thread.getState() == Thread.State.TERMINATED) {
+                iterator.remove();
+                continue;
+            }
+            Wait wait = waits.get(thread);
+            if (wait == null || wait.deadline <= now || wait.condition.getAsBoolean()) return;
+            next = Math.min(next, wait.deadline);
+        }
+        if (next == Long.MAX_VALUE) return; // no deadline to jump to, the threads wait for something else
+        now = next;
+        lock.notifyAll();
+    }
+}
@@ -0,0 +1,22 @@
+package bguspl.set.ex;
+
+/**
+ * The verdict of the dealer on a set claimed by a player.
+ */
+public enum ClaimVerdict {
+
+    /**
+     * The set is legal, and it was removed from the table.
+     */
+    POINT,
+
+    /**
+     * The set is not legal.
+     */
+    PENALTY,
+
+    /**
+     * The set was not checked: some of its cards were removed from the table (e.g. with an earlier legal set).
+     */
+    STALE
+}
@@ -1,16 +1,16 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.IntSetSink;
+import bguspl.set.SetCache;
 
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 /**
  * This class manages the dealer's threads and data
  */
@@ -28,9 +28,56 @@ public class Dealer implements Runnable, DealerObserver {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck (the first deckCount entries, the top of the deck is the last).
      */
-    private final List<Integer> deck;
+    private final int[] deck;
+    private int deckCount;
+
+    /**
+     * The count of legal sets among the cards that are still in the game (deck and table).
+     */
+    private final SolvabilityTracker solvabilityTracker;
+
+    /**
+     * The solver of the sets on the table in the background (null if config.backgroundSolver is off).
+     */
+    private final TableSolver solver;
+
+    /**
+     * The cache of the sets of collections of cards, shared by the games in the JVM (null if there is none).
+     */
+    private final SetCache setCache;
+
+    /**
+     * A reusable buffer for the cards of the set a player claims.
+     */
+    private final int[] claimedSet;
+
+    /**
+     * Reusable buffers for picking the cards to deal (see pickSolvableCards): the cards on the table followed by the
+     * cards of the deck, which of them are on the table, and the set picked among them.
+     */
+    private final int[] dealCards;
+    private final boolean[] onTable;
+    private final int[] pickedSet;
+
+    /**
+     * Reusable buffers for the cards placed on or removed from the table, and for the slots in the order they are
+     * filled or emptied.
+     */
+    private final int[] tableCards;
+    private final int[] slots;
+
+    /**
+     * The most cards of the deck the picked set may have, and whether a set was picked.
+     */
+    private int pickLimit;
+    private boolean picked;
+
+    /**
+     * The sink that picks the first set found that can be dealt.
+     */
+    private final IntSetSink setPicker = this::pickSet;
 
     /**
      * True iff game should be terminated.
@@ -38,9 +85,29 @@ public class Dealer implements Runnable, DealerObserver {
     private volatile boolean terminate;
 
     /**
-     * The time when the dealer needs to reshuffle the deck due to turn timeout.
+     * The time when the dealer needs to reshuffle the deck due to turn timeout (read by the countdown ticker).
+     */
+    private volatile long reshuffleTime = Long.MAX_VALUE;
+
+    /**
+     * The ticker that renders the countdown display from reshuffleTime, on a thread of its own (see runTicker).
      */
-    private long reshuffleTime = Long.MAX_VALUE;
+    private final Thread ticker;
+
+    /**
+     * The resets of the countdown that the ticker did not render yet (a reset wakes it up before its next tick).
+     */
+    private final BlockingQueue<Long> timerResets = new LinkedBlockingQueue<>();
+
+    /**
+     * The seconds left that the ticker rendered last (only the ticker thread uses it).
+     */
+    private long shownSeconds = -1;
+
+    /**
+     * The dealer thread (null until the dealer starts running).
+     */
+    private volatile Thread dealerThread;
 
     /**
      * True iff the dealer should create and start the players threads once.
@@ -52,28 +119,54 @@ public class Dealer implements Runnable, DealerObserver {
      */
     private BlockingQueue<PlayerTask> queue = new LinkedBlockingQueue<PlayerTask>();
 
+    /**
+     * The latest claim of each player (its verdict is not done while the claim is pending).
+     */
+    private final AtomicReferenceArray<PlayerTask> pendingClaims;
+
     /**
      * The immediate task to be executed by the dealer.
      */
     PlayerTask immediateTask = null;
 
     /**
-     * The max time to sleep between update the clock when < warningTime .
+     * The claims drained from the queue to be checked together (if config.batchClaims is on), in arrival order.
+     */
+    private final List<PlayerTask> claims = new ArrayList<>();
+
+    /**
+     * Reusable buffers for checking a batch of claims: the set of each claim, the sets as the candidates of
+     * Util.testSets, its results, and which of the claims are complete sets and the verdicts on them (grown by
+     * ensureBatchCapacity when more claims are drained than they fit).
+     */
+    private int[][] claimSets;
+    private int[] batchCards;
+    private long[] batchResults;
+    private boolean[] complete;
+    private ClaimVerdict[] verdicts;
+
+    /**
+     * The cards of the sets that won in the current batch, and the sets themselves.
+     */
+    private final boolean[] takenCards;
+    private final List<int[]> wonSets = new ArrayList<>();
+
+    /**
+     * The time between ticks of the countdown ticker when < warningTime (the display is updated on every tick).
      */
     private final long warningTimeWake = 100;
 
     /**
-     * The timer diplay between changes (in milliseconds).
+     * The time between ticks of the countdown ticker otherwise (the display shows whole seconds).
      */
     private final long displayTimeMillis = 1000;
 
     private class PlayerTask {
         int playerID;
-        CountDownLatch latch;
+        CompletableFuture<ClaimVerdict> verdict = new CompletableFuture<>();
 
-        PlayerTask(int playerID, CountDownLatch latch) {
+        PlayerTask(int playerID) {
             this.playerID = playerID;
-            this.latch = latch;
         }
     }
 
@@ -84,7 +177,27 @@ public class Dealer implements Runnable, DealerObserver {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new int[env.config.deckSize];
+        for (int card = 0; card < deck.length; card++) deck[card] = card;
+        deckCount = deck.length;
+        solvabilityTracker = new SolvabilityTracker(env);
+        solver = env.config.backgroundSolver ? new TableSolver(env, table) : null;
+        setCache = SetCache.shared(env.config, env.util);
+        claimedSet = new int[env.config.featureSize];
+        dealCards = new int[env.config.tableSize + env.config.deckSize];
+        onTable = new boolean[env.config.deckSize];
+        pickedSet = new int[env.config.featureSize];
+        tableCards = new int[env.config.tableSize];
+        slots = new int[env.config.tableSize];
+        for (int slot = 0; slot < slots.length; slot++) slots[slot] = slot;
+
+        pendingClaims = new AtomicReferenceArray<>(players.length);
+
+        // there is at most one pending claim per player (see onEventHappened)
+        ensureBatchCapacity(players.length);
+        takenCards = new boolean[env.config.deckSize];
+        ticker = new Thread(this::runTicker, "Countdown");
+        ticker.setDaemon(true);
     }
 
     /**
@@ -93,19 +206,20 @@ public class Dealer implements Runnable, DealerObserver {
     @Override
     public void run() {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        dealerThread = Thread.currentThread();
         //dealer program loop
         while (!shouldFinish()) {
-            Collections.shuffle(deck);
+            shuffleDeck();
             placeCardsOnTable();
-            updateTimerDisplay(true);//reset the timer before start
+            resetTimer();//reset the timer before start
             startPlayerThreads();// create and start players threads once.
             timerLoop();
-            updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
         if (!terminate) {
             terminate();
         }
+        ticker.interrupt();
         announceWinners();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
@@ -114,9 +228,8 @@ public class Dealer implements Runnable, DealerObserver {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && env.clock.currentTimeMillis() < reshuffleTime) {
             sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
         }
@@ -129,7 +242,18 @@ public class Dealer implements Runnable, DealerObserver {
         for (int player = players.length - 1; player >= 0; player--) {
             players[player].terminate();
         }
+        if (solver != null) solver.terminate();
         terminate = true;
+        // wake the dealer up if it waits for claims
+        Thread thread = dealerThread;
+        if (thread != null && thread != Thread.currentThread()) thread.interrupt();
+    }
+
+    /**
+     * @return - the latest solution of the table published by the background solver (null if there is none).
+     */
+    public TableSolution getSolution() {
+        return solver != null ? solver.getSolution() : null;
     }
 
     /**
@@ -138,74 +262,244 @@ public class Dealer implements Runnable, DealerObserver {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || solvabilityTracker.remainingSets() == 0;
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * Package-private for testing.
      */
-    private void removeCardsFromTable() {
+    void removeCardsFromTable() {
+        if (env.config.batchClaims) {
+            removeClaimedSets();
+            return;
+        }
         if (immediateTask != null) {
-            Player player = players[immediateTask.playerID];
-            List<Integer> set = table.getPlayerSet(immediateTask.playerID);
-            if (set != null) {
-                int[] setArray = set.stream().mapToInt(i->i).toArray();
-                if (!env.util.testSet(setArray)) {
-                    player.penalty();
+            ClaimVerdict verdict = ClaimVerdict.STALE;
+            if (table.getPlayerSet(immediateTask.playerID, claimedSet)) {
+                if (!env.util.testSet(claimedSet)) {
+                    verdict = ClaimVerdict.PENALTY;
                 } else {
-                    table.removeSet(set);
-                    updateTimerDisplay(true);
-                    player.point();
+                    table.removeSet(claimedSet);
+                    solvabilityTracker.removeSet(claimedSet);
+                    resetTimer();
+                    verdict = ClaimVerdict.POINT;
                 }
             }
-            immediateTask.latch.countDown();
+            immediateTask.verdict.complete(verdict);
             immediateTask = null;
         }
     }
 
+    /**
+     * Checks all the drained claims together and removes the legal sets from the table in one go. Claims are resolved
+     * in arrival order: a claim that shares cards with an earlier legal set loses without a penalty (its tokens go
+     * with the cards, as if it was checked after that set was removed), and the other illegal claims are penalized.
+     */
+    private void removeClaimedSets() {
+        int count = claims.size();
+        if (count == 0) return;
+
+        ensureBatchCapacity(count);
+        for (int i = 0; i < count; i++) {
+            int[] set = claimSets[i];
+            complete[i] = table.getPlayerSet(claims.get(i).playerID, set);
+            for (int j = 0; j < set.length; j++) batchCards[j * count + i] = set[j];
+        }
+        env.util.testSets(batchCards, count, batchResults);
+
+        for (int i = 0; i < count; i++) {
+            verdicts[i] = ClaimVerdict.STALE;
+            if (!complete[i]) continue;
+            boolean shared = false;
+            for (int card : claimSets[i]) shared |= takenCards[card];
+            if (shared) continue;
+            if ((batchResults[i / Long.SIZE] >>> i & 1) == 0) {
+                verdicts[i] = ClaimVerdict.PENALTY;
+                continue;
+            }
+            for (int card : claimSets[i]) takenCards[card] = true;
+            wonSets.add(claimSets[i]);
+            verdicts[i] = ClaimVerdict.POINT;
+        }
+
+        if (!wonSets.isEmpty()) {
+            table.removeSets(wonSets);
+            for (int[] set : wonSets) {
+                solvabilityTracker.removeSet(set);
+                for (int card : set) takenCards[card] = false;
+            }
+            wonSets.clear();
+            resetTimer();
+        }
+        for (int i = 0; i < count; i++) claims.get(i).verdict.complete(verdicts[i]);
+        claims.clear();
+    }
+
+    /**
+     * Grows the buffers for checking a batch of claims, if they do not fit the given number of claims.
+     * @param count - the number of claims in the batch.
+     */
+    private void ensureBatchCapacity(int count) {
+        if (complete != null && complete.length >= count) return;
+        int capacity = Math.max(count, complete != null ? 2 * complete.length : 0);
+        claimSets = new int[capacity][env.config.featureSize];
+        batchCards = new int[capacity * env.config.featureSize];
+        batchResults = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+        complete = new boolean[capacity];
+        verdicts = new ClaimVerdict[capacity];
+    }
+
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        List<Integer> cards = new LinkedList<Integer>();
-        if (deck.size()>0){
+        int count = 0;
+        if (deckCount>0){
             int cardsMiss = env.config.tableSize - table.countCards();
             if (cardsMiss > 0) {
-                for (int i = 0; i<cardsMiss & deck.size()>0; i++) cards.add(deck.remove(0));
+                if (env.config.solvableDealing) count = pickSolvableCards(tableCards, cardsMiss);
+                while (count<cardsMiss & deckCount>0) tableCards[count++] = deck[--deckCount];
+            }
+        }
+        table.placeCards(tableCards, count, getShuffeledSlots());
+        // no deal has a set, reshuffle now instead of waiting for the timeout
+        if (env.config.solvableDealing && table.countSets() == 0) reshuffleTime = env.clock.currentTimeMillis();
+    }
+
+    /**
+     * Picks the cards of the deck that complete a legal set with the cards on the table (no more than the missing
+     * cards), unless the table or the cards that would be dealt anyway already have one.
+     * @param cards - an array of at least cardsMiss entries to fill with the picked cards (they are removed from the deck).
+     * @param cardsMiss - the number of cards missing on the table.
+     * @return - the number of cards picked.
+     */
+    private int pickSolvableCards(int[] cards, int cardsMiss) {
+        if (table.countSets() > 0) return 0;
+        int tableCount = table.getCards(dealCards);
+        int len = tableCount;
+        for (int i = 0; i < cardsMiss && i < deckCount; i++) dealCards[len++] = deck[deckCount - 1 - i];
+        if (setCache != null ? setCache.sets(dealCards, len).length > 0 : env.util.hasSet(dealCards, len)) return 0;
+
+        for (int i = len - tableCount; i < deckCount; i++) dealCards[len++] = deck[deckCount - 1 - i];
+        for (int i = 0; i < tableCount; i++) onTable[dealCards[i]] = true;
+        pickLimit = cardsMiss;
+        picked = false;
+        env.util.findSets(dealCards, len, Integer.MAX_VALUE, setPicker);
+        for (int i = 0; i < tableCount; i++) onTable[dealCards[i]] = false;
+
+        int count = 0;
+        if (picked) {
+            for (int card : pickedSet) {
+                if (drawCard(card)) cards[count++] = card; // the cards of the set that are not on the table
             }
         }
-        table.placeCards(cards, getShuffeledSlots());
+        return count;
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Picks a legal set found among the cards on the table and the deck, if it can be dealt.
+     * @param set - the card ids of the set.
+     * @return - true iff the search should go on (the set has too many cards of the deck).
      */
-    private void sleepUntilWokenOrTimeout() {
+    private boolean pickSet(int[] set) {
+        int fromDeck = 0;
+        for (int card : set) if (!onTable[card]) fromDeck++;
+        if (fromDeck > pickLimit) return true;
+        System.arraycopy(set, 0, pickedSet, 0, set.length);
+        picked = true;
+        return false;
+    }
+
+    /**
+     * Sleep until a claim arrives or until the reshuffle time (the countdown display is updated by the ticker).
+     * Package-private for testing.
+     */
+    void sleepUntilWokenOrTimeout() {
         try {
-            immediateTask = queue.poll(getSleepTime(), java.util.concurrent.TimeUnit.MILLISECONDS);
+            immediateTask = env.clock.poll(queue, reshuffleTime - env.clock.currentTimeMillis());
+            if (env.config.batchClaims && immediateTask != null) {
+                // take every claim that is already waiting, to check them together
+                claims.add(immediateTask);
+                queue.drainTo(claims);
+                immediateTask = null;
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset the countdown (the ticker renders it at once).
+     */
+    private void resetTimer() {
+        reshuffleTime = env.clock.currentTimeMillis() + env.config.turnTimeoutMillis;
+        timerResets.add(reshuffleTime);
+    }
+
+    /**
+     * The ticker thread runs here: it ticks when the countdown display changes (see getSleepTime), and at once when
+     * the countdown is reset. It waits by env.clock, so a virtual clock advances to its ticks too.
+     */
+    private void runTicker() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                env.clock.poll(timerResets, getSleepTime());
+                timerResets.clear();
+                tick();
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Update the countdown display, called by the ticker. The display is updated when the seconds left change, and on
+     * every tick when < warningTime.
      * -1 the new time is to ensure that the display will be updated also when thread is quiq.
      */
-    private void updateTimerDisplay(boolean reset) {
-        if (reset) {
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        }
+    private void tick() {
         long newTimeMillies = getTimeLeft();
-        env.ui.setCountdown(newTimeMillies-1, newTimeMillies <= env.config.turnTimeoutWarningMillis);
+        boolean warn = newTimeMillies <= env.config.turnTimeoutWarningMillis;
+        long seconds = (newTimeMillies - 1) / displayTimeMillis;
+        if (warn || seconds != shownSeconds) {
+            shownSeconds = seconds;
+            env.ui.setCountdown(newTimeMillies-1, warn);
+        }
     }
 
     /**
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        List<Integer> removedCards = table.removeAllCards(getShuffeledSlots());
-        for (int card : removedCards) deck.add(card);
+        int count = table.removeAllCards(getShuffeledSlots(), tableCards);
+        for (int i = 0; i < count; i++) deck[deckCount++] = tableCards[i];
+    }
+
+    /**
+     * Shuffles the cards left in the deck in place (Fisher-Yates).
+     */
+    private void shuffleDeck() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = deckCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = deck[i];
+            deck[i] = deck[j];
+            deck[j] = card;
+        }
+    }
+
+    /**
+     * Takes a specific card out of the deck, by moving the top card to its place.
+     * @param card - the card id.
+     * @return - true iff the card was in the deck.
+     */
+    private boolean drawCard(int card) {
+        for (int i = 0; i < deckCount; i++) {
+            if (deck[i] == card) {
+                deck[i] = deck[--deckCount];
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -231,6 +525,8 @@ public class Dealer implements Runnable, DealerObserver {
             }
         } 
         env.ui.announceWinner(winners);
+        if (setCache != null)
+            env.logger.info("set cache hit rate: " + setCache.hitRate() + " (" + setCache.hits() + " hits, " + setCache.misses() + " misses)");
     }
 
 
@@ -239,13 +535,22 @@ public class Dealer implements Runnable, DealerObserver {
     ///////////////////////
 
     /*
-     * create and start the players threads
+     * create and start the players threads (and the solver and ticker threads)
      */
     private void startPlayerThreads() {
         if (createPlayerThreads){
+            env.clock.register(ticker);
+            ticker.start();
+            if (solver != null) {
+                Thread solverThread = new Thread(solver, "Solver");
+                solverThread.setDaemon(true);
+                solverThread.start();
+                env.logger.info("thread " + solverThread.getName() + " created.");
+            }
             for (Player player : players) {
                 int logID = player.id +1;
                 Thread playerThread = new Thread(player, "Player: " + logID);
+                env.clock.register(playerThread);
                 playerThread.start();
                 env.logger.info("thread " + playerThread.getName() + " created.");
             }
@@ -254,38 +559,53 @@ public class Dealer implements Runnable, DealerObserver {
     }
 
     /*
-     * called by the player to notify the dealer that a set added to be checked
+     * called by the player to hand a set to the dealer to be checked, returns the verdict on it
+     * (the verdict of the pending claim if the player has one, so a player has one outstanding claim at most)
      */
     @Override
-    public void onEventHappened(int playerID, CountDownLatch latch) throws InterruptedException {
-            queue.put(new PlayerTask(playerID, latch));
+    public CompletableFuture<ClaimVerdict> onEventHappened(int playerID) {
+        while (true) {
+            PlayerTask pending = pendingClaims.get(playerID);
+            if (pending != null && !pending.verdict.isDone()) return pending.verdict;
+            PlayerTask task = new PlayerTask(playerID);
+            if (pendingClaims.compareAndSet(playerID, pending, task)) {
+                queue.add(task); // never blocks, the queue is not bounded
+                return task.verdict;
+            }
+        }
     }
 
     /*
      * returne the time left for the next reshuffle, always positiv
      */
     private long getTimeLeft(){
-        long current = reshuffleTime - System.currentTimeMillis();
+        long current = reshuffleTime - env.clock.currentTimeMillis();
         if (current <= 0) return 1;
         return current;
     }
 
     /*
-     * returne the time to sleep
+     * returne the time to sleep until the countdown display changes (by env.clock)
      */
     private long getSleepTime(){
-        if (getTimeLeft() < env.config.turnTimeoutWarningMillis) 
+        long timeLeft = getTimeLeft();
+        if (timeLeft <= env.config.turnTimeoutWarningMillis)
             return warningTimeWake;
-        return getTimeLeft()%displayTimeMillis;
+        long nextSecond = (timeLeft - 1) % displayTimeMillis + 1;
+        return Math.min(nextSecond, timeLeft - env.config.turnTimeoutWarningMillis);
     }
 
     /*
-     * returne a list of shuffeled slots
+     * returne the slots shuffeled in place (Fisher-Yates)
      */
-    private List<Integer> getShuffeledSlots(){
-        List<Integer> slots = new ArrayList<Integer>();
-        for (int slot = 0; slot < env.config.tableSize; slot++) slots.add(slot);
-        Collections.shuffle(slots);
+    private int[] getShuffeledSlots(){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = slots.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+        }
         return slots;
     }
 }
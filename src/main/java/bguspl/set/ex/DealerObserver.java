@@ -1,6 +1,15 @@
 package bguspl.set.ex;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 
 public interface DealerObserver {
-    void onEventHappened(int playerID, CountDownLatch latch) throws InterruptedException;
+
+    /**
+     * Hands the set of tokens a player placed to the dealer to be checked, without waiting for it.
+     * A player has one outstanding claim at most: until the verdict on its claim is completed, calling this again
+     * does not hand another claim, and returns the same verdict (so the caller must act on each verdict once).
+     *
+     * @param playerID - the id of the player.
+     * @return - the verdict on the set, completed when the dealer has checked it.
+     */
+    CompletableFuture<ClaimVerdict> onEventHappened(int playerID);
 }
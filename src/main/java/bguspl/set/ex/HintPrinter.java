@@ -0,0 +1,52 @@
+package bguspl.set.ex;
+
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class prints hint lines to the console on a daemon thread of its own, so that the thread that reports the
+ * hints (the dealer) never blocks on console I/O.
+ */
+class HintPrinter implements Runnable {
+
+    /**
+     * The lines waiting to be printed.
+     */
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    /**
+     * The stream to print the lines to.
+     */
+    private final PrintStream out;
+
+    /**
+     * The printing thread (null until the first line is printed).
+     */
+    private Thread thread;
+
+    HintPrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Queues a line to be printed, and starts the printing thread if it is not running yet.
+     *
+     * @param line - the line to print.
+     */
+    synchronized void print(String line) {
+        if (thread == null) {
+            thread = new Thread(this, "hints");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        lines.add(line);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) out.println(lines.take());
+        } catch (InterruptedException ignored) {}
+    }
+}
@@ -1,7 +1,6 @@
 package bguspl.set.ex;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CountDownLatch;
 
 import bguspl.set.Env;
 
@@ -114,7 +113,7 @@ public class Player implements Runnable {
         if (!human) createArtificialIntelligence();
         while (!terminate) {
             try {
-                slot = queue.take();
+                slot = env.clock.take(queue);
                 act();
             } catch (InterruptedException ignored) {}
         }
@@ -144,6 +143,7 @@ public class Player implements Runnable {
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + logID);
+        env.clock.register(aiThread);
         aiThread.start();
     }
 
@@ -210,9 +210,9 @@ public class Player implements Runnable {
         int tokens = table.placeOrRemoveToken(id, slot);
         if (tokens == env.config.featureSize) {
             try {
-                CountDownLatch latch = new CountDownLatch(1);
-                dealerObserver.onEventHappened(id, latch);
-                latch.await();
+                ClaimVerdict verdict = env.clock.await(dealerObserver.onEventHappened(id));
+                if (verdict == ClaimVerdict.POINT) point();
+                else if (verdict == ClaimVerdict.PENALTY) penalty();
                 freeze();
                 queue.clear();
             }catch (InterruptedException e) {
@@ -231,7 +231,7 @@ public class Player implements Runnable {
             while (wait >= displayTimeMillis) {
                 try {
                     env.ui.setFreeze(id, wait);
-                    Thread.sleep(displayTimeMillis);
+                    env.clock.sleep(displayTimeMillis);
                 } catch (InterruptedException e) {
                     throw e;
                 }
@@ -240,7 +240,7 @@ public class Player implements Runnable {
             if (wait > 0 & wait <= displayTimeMillis) {
                 try {
                     env.ui.setFreeze(id, wait);
-                    Thread.sleep(wait);
+                    env.clock.sleep(wait);
                 } catch (InterruptedException e) {
                     throw e;
                 }
@@ -259,7 +259,7 @@ public class Player implements Runnable {
      */
     private void AiKeyPressed(int slot){
         try {
-            queue.put(slot);
+            env.clock.put(queue, slot);
         } catch (InterruptedException e){
             Thread.currentThread().interrupt();
         }
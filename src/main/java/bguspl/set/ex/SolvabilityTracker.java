@@ -0,0 +1,89 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.stream.IntStream;
+
+/**
+ * This class keeps a live count of the legal sets among the cards that are still in the game (in the deck or on the
+ * table), so that the dealer can tell whether the game can go on without searching the deck.
+ *
+ * @inv remainingSets >= 0
+ */
+public class SolvabilityTracker {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards that are still in the game (the first remainingCount entries).
+     */
+    private final int[] remainingCards;
+
+    /**
+     * Mapping between a card and its index in remainingCards (-1 if the card is out of the game).
+     */
+    private final int[] cardToIndex;
+
+    /**
+     * The number of cards that are still in the game.
+     */
+    private int remainingCount;
+
+    /**
+     * The number of legal sets among the cards that are still in the game.
+     */
+    private long remainingSets;
+
+    /**
+     * The class constructor, starting with the full deck in the game.
+     *
+     * @param env - the environment object.
+     */
+    public SolvabilityTracker(Env env) {
+        this.env = env;
+        remainingCards = IntStream.range(0, env.config.deckSize).toArray();
+        cardToIndex = IntStream.range(0, env.config.deckSize).toArray();
+        remainingCount = env.config.deckSize;
+        remainingSets = env.util.countSets(remainingCards, remainingCount);
+    }
+
+    /**
+     * Takes the cards of a collected set out of the game, along with every legal set they were part of.
+     *
+     * @param set - the card ids of the set.
+     * @post - remainingSets() is the number of legal sets among the cards that are still in the game.
+     */
+    public void removeSet(int[] set) {
+        for (int card : set)
+            removeCard(card);
+    }
+
+    /**
+     * @return - the number of legal sets among the cards that are still in the game.
+     */
+    public long remainingSets() {
+        return remainingSets;
+    }
+
+    /**
+     * Takes a card out of the game, along with every legal set it was part of.
+     *
+     * @param card - the card id.
+     */
+    private void removeCard(int card) {
+        int index = cardToIndex[card];
+        if (index < 0)
+            return;
+
+        remainingSets -= env.util.findSetsWith(card, remainingCards, remainingCount, set -> true);
+
+        // move the last remaining card into the removed card's place
+        int last = remainingCards[--remainingCount];
+        remainingCards[index] = last;
+        cardToIndex[last] = index;
+        cardToIndex[card] = -1;
+    }
+}
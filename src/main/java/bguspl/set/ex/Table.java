@@ -1,12 +1,20 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.IntSetSink;
+import bguspl.set.SetCache.Fingerprint;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class contains the data that is visible to the player.
@@ -44,7 +52,55 @@ public class Table {
     /**
      * True iff the dealer is active.
      */
-    private boolean dealerActive = false;
+    private volatile boolean dealerActive = false;
+
+    /**
+     * The legal sets among the cards on the table (each one holds sorted card ids, compared by identity).
+     */
+    private final Set<int[]> tableSets = new LinkedHashSet<>();
+
+    /**
+     * Mapping between a card on the table and the legal sets in tableSets it is part of.
+     */
+    private final Map<Integer, List<int[]>> cardToSets = new HashMap<>();
+
+    /**
+     * Reusable buffers for the cards on the table and for the features of a hinted set.
+     */
+    private final int[] tableCards;
+    private final int[][] hintFeatures;
+
+    /**
+     * The sink that adds the sets found by the util to the sets index.
+     */
+    private final IntSetSink setIndexer = this::indexSet;
+
+    /**
+     * Mapping between the fingerprint of a set on the table that was reported by hints and its hint (slots and features).
+     */
+    private final Map<Fingerprint, String> hintedSets = new HashMap<>();
+
+    /**
+     * The cards on the table when hints were last reported, and a buffer for the current ones (bitmaps of card ids).
+     */
+    private long[] hintedCards;
+    private long[] currentCards;
+
+    /**
+     * The printer of the hints, so that the dealer does not wait for the console.
+     */
+    private final HintPrinter hintPrinter = new HintPrinter(System.out);
+
+    /**
+     * The observers of the changes of the cards on the table, and whether the cards changed since they were notified.
+     */
+    private final List<TableObserver> observers = new CopyOnWriteArrayList<>();
+    private boolean cardsChanged = false;
+
+    /**
+     * The solver of the table, that reports the hints of its solutions instead of the table (null if there is none).
+     */
+    private volatile TableSolver solver;
 
 
     /**
@@ -63,6 +119,13 @@ public class Table {
         this.slotToToken = new boolean[env.config.tableSize][env.config.players];
         playerLocks = new Object[env.config.players];
         for (int i = 0; i < env.config.players; i++) playerLocks[i] = new Object();
+        tableCards = new int[env.config.tableSize];
+        hintFeatures = new int[env.config.featureSize][env.config.featureCount];
+        hintedCards = new long[(env.config.deckSize + Long.SIZE - 1) / Long.SIZE];
+        currentCards = new long[hintedCards.length];
+
+        // index the sets of the cards the table starts with
+        env.util.findSets(tableCards, getCards(tableCards), Integer.MAX_VALUE, setIndexer);
     }
 
     /**
@@ -76,18 +139,80 @@ public class Table {
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the table.
+     * This method prints the legal sets of cards on the table that changed since it was last called: the sets that
+     * were found since, and the sets that are gone. Nothing is printed if the cards on the table are the same.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+        int count = getCards(tableCards);
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++)
+            slots[i] = cardToSlot[tableCards[i]];
+        hints(tableCards, slots, count, tableSets);
+    }
+
+    /**
+     * Prints the changed hints of a solution of the table (like hints(), on the solver thread).
+     * @param solution - the latest solution published by the solver.
+     */
+    void hints(TableSolution solution) {
+        int[] cards = solution.getCards();
+        hints(cards, solution.getSlots(), cards.length, solution.getSets());
+    }
+
+    /**
+     * Prints the legal sets of the given cards that changed since the hints were last printed.
+     * @param cards - the cards on the table.
+     * @param slots - the slot of each card.
+     * @param count - the number of cards.
+     * @param sets  - the legal sets among the cards.
+     */
+    private void hints(int[] cards, int[] slots, int count, Collection<int[]> sets) {
+        Arrays.fill(currentCards, 0L);
+        for (int i = 0; i < count; i++)
+            currentCards[cards[i] / Long.SIZE] |= 1L << cards[i];
+        if (Arrays.equals(currentCards, hintedCards))
+            return;
+        long[] previousCards = hintedCards;
+        hintedCards = currentCards;
+        currentCards = previousCards;
+
+        Map<Fingerprint, int[]> currentSets = new LinkedHashMap<>();
+        for (int[] set : sets)
+            currentSets.put(new Fingerprint(set, set.length, env.config.deckSize), set);
+
+        hintedSets.entrySet().removeIf(hinted -> {
+            if (currentSets.containsKey(hinted.getKey()))
+                return false;
+            hintPrinter.print("Hint: Set gone: " + hinted.getValue());
+            return true;
+        });
+        currentSets.forEach((fingerprint, set) -> {
+            if (!hintedSets.containsKey(fingerprint)) {
+                String hint = hint(set, cards, slots, count);
+                hintedSets.put(fingerprint, hint);
+                hintPrinter.print("Hint: Set found: " + hint);
+            }
         });
     }
 
+    /**
+     * @param set   - the card ids of a legal set on the table.
+     * @param cards - the cards on the table.
+     * @param slots - the slot of each card.
+     * @param count - the number of cards.
+     * @return - the hint of the set: its sorted slots and the features of its cards.
+     */
+    private String hint(int[] set, int[] cards, int[] slots, int count) {
+        int[] setSlots = new int[set.length];
+        for (int i = 0; i < set.length; i++)
+            for (int j = 0; j < count; j++)
+                if (cards[j] == set[i])
+                    setSlots[i] = slots[j];
+        Arrays.sort(setSlots);
+        env.util.cardsToFeatures(set, hintFeatures);
+        return "slots: " + Arrays.toString(setSlots) + " features: " + Arrays.deepToString(hintFeatures);
+    }
+
     /**
      * Count the number of cards currently on the table.
      * 
@@ -105,7 +230,7 @@ public class Table {
     }
 
     /**
-     * Places a card on the table in a grid slot.
+     * Places a card on the table in a grid slot, instead of the card that is in it (if any).
      * @param card - the card id to place in the slot.
      * @param slot - the slot in which the card should be placed.
      * 
@@ -116,11 +241,14 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
+        clearSlot(slot);
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
+        cardsChanged = true;
+        addSetsOf(card);
         
         // Placing the card in UI
         env.ui.placeCard(card, slot); 
@@ -135,22 +263,10 @@ public class Table {
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        // Removing the card
-        if (slotToCard[slot] != null) {
-            int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
-
-            // Removing tokens from slot
-            for (int i = 0; i < slotToToken[slot].length; i++) {
-                slotToToken[slot][i] = false;
-            }
-            env.ui.removeTokens(slot);
-            env.ui.removeCard(slot);
-        }
+        clearSlot(slot);
     }
 
     /**
@@ -201,13 +317,11 @@ public class Table {
 
     public int placeOrRemoveToken (int player, int slot) {
         synchronized(playerLocks[player]) {
-            while (dealerActive) {
-                try {
-                    playerLocks[player].wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return -1;
-                }
+            try {
+                env.clock.await(playerLocks[player], () -> !dealerActive);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
             }
             int numOfTokens = numOfTokens(player);
             if(getCard(slot) == null || (numOfTokens == env.config.featureSize && !slotToToken[slot][player]))
@@ -226,46 +340,45 @@ public class Table {
 
     /**
      * @param playerID - the player the set belong to.
-     * @return - An array of integers representing the card IDs of the set, if it's illegal set size, return null.
+     * @param set - an array of config.featureSize entries to fill with the card IDs of the set.
+     * @return - 'true' - if the set was filled, 'false' - if it's illegal set size.
      * 
      ** used by the dealer
      ** read from all
      */
-    public List<Integer> getPlayerSet(int playerID){
-        List<Integer> tokenCards = getTokenCards(playerID);
-        if(tokenCards.size() != env.config.featureSize)
-            return null;
-        else {
-            return tokenCards;
-        }
+    public boolean getPlayerSet(int playerID, int[] set){
+        return getTokenCards(playerID, set) == env.config.featureSize;
     }
 
 
     /**
      * The method places an amount of cards on the table
-     * @param cards - List representing the cards that will be placed.
+     * @param cards - array representing the cards that will be placed.
+     * @param count - the number of cards in the array.
+     * @param slots - the slots to place the cards in, in order (the full ones are skipped).
      * 
      ** used by the dealer
      ** write to cardToSlot and slotToCard 
      */
-    public void placeCards(List<Integer> cards, List<Integer> slots){
+    public void placeCards(int[] cards, int count, int[] slots){
         // sync to all players locks if not already active
         if (!dealerActive){
             dealerActive = true;
             for (Object playerLock : playerLocks) synchronized(playerLock) {}
         }
         int cardIndex = 0;
-        for (int i = 0; i < slots.size() && cardIndex < cards.size(); i++){  // added extra must condition to avoid out of bound exception
-            int slot = slots.get(i);
+        for (int i = 0; i < slots.length && cardIndex < count; i++){  // added extra must condition to avoid out of bound exception
+            int slot = slots[i];
             if(getCard(slot) == null) {
-                placeCard(cards.get(cardIndex), slot);
+                placeCard(cards[cardIndex], slot);
                 cardIndex++;
             }
         }
         
         dealerActive = false;
         for (Object playerLock : playerLocks) { synchronized(playerLock) { playerLock.notify(); } } //release all wait players
-        if(env.config.hints & cards.size() > 0) hints();//print hints if set in config
+        notifyObservers();
+        if(env.config.hints && solver == null) hints();//print hints if set in config (if the cards changed)
     }
 
     /**
@@ -275,47 +388,110 @@ public class Table {
      ** used by the dealer
      ** write to all
      */
-    public boolean removeSet(List<Integer> set){
-        // sync to all players locks
+    public boolean removeSet(int[] set){
+        return removeSets(Collections.singletonList(set));
+    }
+
+    /**
+     * @param sets - arrays representing sets of players (that do not share cards).
+     * @return - 'true' - if the cards of all the sets were removed, else return 'false' (and no card is removed).
+     *
+     ** used by the dealer
+     ** write to all
+     */
+    public boolean removeSets(List<int[]> sets){
+        // sync to all players locks, once for all the sets
         dealerActive = true;
         for (Object playerLock : playerLocks) synchronized(playerLock) {}
 
-        for (Integer card : set) {
-            Integer slot = getSlot(card);
-            if(slot == null){
-                return false;
-            }
-            removeCard(slot);
-        }
+        for (int[] set : sets)
+            for (int card : set)
+                if(getSlot(card) == null)
+                    return false;
+        for (int[] set : sets)
+            for (int card : set)
+                removeCard(getSlot(card));
         // release all wait players will be done in the placeCards method
         return true;
     }
 
     /**
      * The method removes all cards from the table.
-     * @slots - List of slots that will be removed.
-     * @return - A List of the card Ids that were removed.
+     * @param slots - array of slots that will be removed, in order.
+     * @param cards - an array of at least config.tableSize entries to fill with the card Ids that were removed.
+     * @return - the number of cards that were removed.
      * 
      ** used by the dealer
      ** write to all
      */
-    public List<Integer> removeAllCards(List<Integer> slots) {
+    public int removeAllCards(int[] slots, int[] cards) {
         // sync to all players locks
         dealerActive = true;
         for (Object playerLock : playerLocks) synchronized(playerLock) {}
 
-        List<Integer> cardsDeleted = new ArrayList<Integer>();
-        for (Integer slot : slots) {
+        int count = 0;
+        for (int slot : slots) {
             Integer card = getCard(slot);
             if(card != null){
                 removeCard(slot);
-                cardsDeleted.add(card);
+                cards[count++] = card;
             }
         }
         // release all wait players will be done in the placeCards method   
-        return cardsDeleted;
+        notifyObservers();
+        return count;
     }
     
+    /**
+     * @return - the number of legal sets among the cards currently on the table.
+     *
+     ** used by the dealer
+     ** read from tableSets
+     */
+    public int countSets() {
+        return tableSets.size();
+    }
+
+    /**
+     * @return - the legal sets among the cards currently on the table, each one contains sorted card ids.
+     *
+     ** used by the dealer
+     ** read from tableSets
+     */
+    public List<int[]> getSets() {
+        return new ArrayList<>(tableSets);
+    }
+
+    /**
+     * @param cards - an array of at least config.tableSize entries to fill with the card ids on the table.
+     * @return - the number of cards on the table.
+     *
+     ** used by the dealer
+     ** read from slotToCard
+     */
+    public int getCards(int[] cards) {
+        int count = 0;
+        for (Integer card : slotToCard)
+            if (card != null)
+                cards[count++] = card;
+        return count;
+    }
+
+    /**
+     * @param observer - an observer to notify (on the dealer thread) after the cards on the table change.
+     */
+    public void addObserver(TableObserver observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * @param solver - the solver that observes the table, and reports the hints of its solutions instead of the table.
+     */
+    void setSolver(TableSolver solver) {
+        this.solver = solver;
+        addObserver(solver);
+    }
+
     /****************
      * Simple getters
      ****************/
@@ -352,18 +528,108 @@ public class Table {
 
     /** 
      * @param player - the player who placed the tokens
-     * @return - list of card IDs the players placed his token on
-     * @inv for each player : 0 <= getTokens(player).size() <= 3
+     * @param cards - an array to fill with the card IDs the players placed his token on (as many as fit)
+     * @return - the number of cards the players placed his token on
+     * @inv for each player : 0 <= getTokenCards(player, cards) <= 3
      * 
      ** used by the dealer
      ** read from slotToToken, cardToSlot, slotToCard  
      */
-    private List<Integer> getTokenCards (int player) {
-        List<Integer> cards = new ArrayList<Integer>();
+    private int getTokenCards (int player, int[] cards) {
+        int count = 0;
         for (int slot = 0; slot < slotToToken.length; slot++) {
-            if(slotToToken[slot][player])
-                cards.add(getCard(slot));
+            if(slotToToken[slot][player]) {
+                if (count < cards.length)
+                    cards[count] = getCard(slot);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the card in a grid slot (if any) and the tokens on it, without the delay of removeCard.
+     * @param slot - the slot to clear.
+     *
+     ** used by the dealer
+     ** write to slotToCard and cardToSlot and slotToToken
+     */
+    private void clearSlot(int slot) {
+        if (slotToCard[slot] == null)
+            return;
+        int card = slotToCard[slot];
+        slotToCard[slot] = null;
+        cardToSlot[card] = null;
+        cardsChanged = true;
+        removeSetsOf(card);
+
+        // Removing tokens from slot
+        for (int i = 0; i < slotToToken[slot].length; i++) {
+            slotToToken[slot][i] = false;
+        }
+        env.ui.removeTokens(slot);
+        env.ui.removeCard(slot);
+    }
+
+    /**
+     * Notifies the observers of the cards on the table, if they changed since the observers were last notified.
+     *
+     ** used by the dealer
+     ** read from slotToCard
+     */
+    private void notifyObservers() {
+        if (!cardsChanged)
+            return;
+        cardsChanged = false;
+        int count = getCards(tableCards);
+        int[] cards = Arrays.copyOf(tableCards, count);
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++)
+            slots[i] = cardToSlot[cards[i]];
+        for (TableObserver observer : observers)
+            observer.onTableChanged(cards.clone(), slots.clone());
+    }
+
+    /**
+     * Adds to the sets index the legal sets that a newly placed card completes with the cards already on the table.
+     * @param card - the card that was placed on the table.
+     *
+     ** used by the dealer
+     ** read from slotToCard, write to tableSets and cardToSets
+     */
+    private void addSetsOf(int card) {
+        env.util.findSetsWith(card, tableCards, getCards(tableCards), setIndexer);
+    }
+
+    /**
+     * Adds a legal set of cards on the table to the sets index.
+     * @param set - the card ids of the set (a buffer of the util, copied here).
+     * @return - true, to keep receiving the sets the placed card is part of.
+     */
+    private boolean indexSet(int[] set) {
+        int[] copy = set.clone();
+        tableSets.add(copy);
+        for (int member : copy)
+            cardToSets.computeIfAbsent(member, key -> new ArrayList<>()).add(copy);
+        return true;
+    }
+
+    /**
+     * Removes from the sets index the legal sets that a card removed from the table was part of.
+     * @param card - the card that was removed from the table.
+     *
+     ** used by the dealer
+     ** write to tableSets and cardToSets
+     */
+    private void removeSetsOf(int card) {
+        List<int[]> sets = cardToSets.remove(card);
+        if (sets == null)
+            return;
+        for (int[] set : sets) {
+            tableSets.remove(set);
+            for (int member : set)
+                if (member != card)
+                    cardToSets.get(member).remove(set);
         }
-        return cards;
     }
 }
@@ -0,0 +1,5 @@
+package bguspl.set.ex;
+
+public interface TableObserver {
+    void onTableChanged(int[] cards, int[] slots);
+}
@@ -0,0 +1,75 @@
+package bguspl.set.ex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the cards on the table and the legal sets among them, published by the TableSolver.
+ *
+ * @inv version >= 0
+ */
+public final class TableSolution {
+
+    /**
+     * The number of table changes this snapshot reflects (a later snapshot has a larger version).
+     */
+    private final long version;
+
+    /**
+     * The cards on the table, the slot of each one, and the legal sets among them (each one holds sorted card ids).
+     */
+    private final int[] cards;
+    private final int[] slots;
+    private final int[][] sets;
+
+    TableSolution(long version, int[] cards, int[] slots, List<int[]> sets) {
+        this.version = version;
+        this.cards = cards.clone();
+        this.slots = slots.clone();
+        this.sets = sets.toArray(new int[0][]);
+    }
+
+    /**
+     * @return - the number of table changes this snapshot reflects.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return - the cards that were on the table.
+     */
+    public int[] getCards() {
+        return cards.clone();
+    }
+
+    /**
+     * @return - the slot of each card that was on the table (in the order of getCards).
+     */
+    public int[] getSlots() {
+        return slots.clone();
+    }
+
+    /**
+     * @return - the number of legal sets among the cards.
+     */
+    public int countSets() {
+        return sets.length;
+    }
+
+    /**
+     * @return - the legal sets among the cards, each one contains sorted card ids.
+     */
+    public List<int[]> getSets() {
+        List<int[]> copy = new ArrayList<>(sets.length);
+        for (int[] set : sets)
+            copy.add(set.clone());
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "version " + version + " cards " + Arrays.toString(cards) + " sets " + Arrays.deepToString(sets);
+    }
+}
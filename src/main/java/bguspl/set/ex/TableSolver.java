@@ -0,0 +1,134 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.IntSetSink;
+import bguspl.set.SetCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class finds the legal sets on the table on a thread of its own whenever the cards on the table change, and
+ * publishes them as an immutable snapshot, so that any thread can read the current sets without locking the table or
+ * searching for them. The hints of the table (if config.hints is on) are reported from these snapshots.
+ */
+public class TableSolver implements Runnable, TableObserver {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table the solver observes.
+     */
+    private final Table table;
+
+    /**
+     * The cache of the sets of the cards on tables, shared by the games in the JVM (null if there is none).
+     */
+    private final SetCache setCache;
+
+    /**
+     * The cards on the table and their slots after each change that was not solved yet (in the order of the changes).
+     */
+    private final BlockingQueue<int[][]> changes = new LinkedBlockingQueue<>();
+
+    /**
+     * The latest solution (of the cards on the table after the last change that was solved).
+     */
+    private volatile TableSolution solution = new TableSolution(0, new int[0], new int[0], new ArrayList<>());
+
+    /**
+     * The sets found by the current search, and the sink that collects them.
+     */
+    private final List<int[]> sets = new ArrayList<>();
+    private final IntSetSink collector = set -> sets.add(set.clone());
+
+    /**
+     * The thread of the solver (set by the solver thread, read by the dealer thread).
+     */
+    private volatile Thread solverThread;
+
+    /**
+     * True iff the solver should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * @param env   - the game environment object.
+     * @param table - the table to solve (the solver observes its changes, and reports its hints).
+     */
+    public TableSolver(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+        this.setCache = SetCache.shared(env.config, env.util);
+        table.setSolver(this);
+    }
+
+    /**
+     * The solver thread starts here (main loop for the solver thread).
+     */
+    @Override
+    public void run() {
+        solverThread = Thread.currentThread();
+        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        while (!terminate) {
+            try {
+                int[][] change = changes.take();
+                long version = solution.version() + 1;
+
+                // only the latest change needs solving, the ones before it are already outdated
+                for (int[][] newer = changes.poll(); newer != null; newer = changes.poll()) {
+                    change = newer;
+                    version++;
+                }
+                solve(version, change[0], change[1]);
+                if (env.config.hints) table.hints(getSolution());
+            } catch (InterruptedException ignored) {}
+        }
+        env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * Called when the game should be terminated.
+     */
+    public void terminate() {
+        terminate = true;
+        Thread thread = solverThread;
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Called by the table (on the dealer thread) after the cards on it changed.
+     * @param cards - the cards on the table (a copy the solver may keep).
+     * @param slots - the slot of each card (a copy the solver may keep).
+     */
+    @Override
+    public void onTableChanged(int[] cards, int[] slots) {
+        changes.add(new int[][]{cards, slots});
+    }
+
+    /**
+     * @return - the latest published solution of the table (its version is the number of table changes it reflects).
+     */
+    public TableSolution getSolution() {
+        return solution;
+    }
+
+    /**
+     * Finds the legal sets among the cards and publishes them.
+     * @param version - the number of table changes the cards reflect.
+     * @param cards - the cards on the table.
+     * @param slots - the slot of each card.
+     */
+    private void solve(long version, int[] cards, int[] slots) {
+        sets.clear();
+        if (setCache != null) sets.addAll(Arrays.asList(setCache.sets(cards, cards.length)));
+        else env.util.findSets(cards, cards.length, Integer.MAX_VALUE, collector);
+        solution = new TableSolution(version, cards, slots, sets);
+    }
+}
@@ -0,0 +1,73 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static bguspl.set.ex.Fixtures.createUtil;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetCacheTest {
+
+    /**
+     * The capacities to check, below, at and above the number of segments.
+     */
+    private static final int[] capacities = {1, 2, 3, 4, 5, 10, 15, 16, 17, 40};
+
+    /**
+     * @return - count distinct random collections of 12 cards of the 81 cards deck.
+     */
+    private static List<int[]> collections(int count, Random random) {
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < 81; ++card)
+            deck.add(card);
+        Set<Set<Integer>> seen = new HashSet<>();
+        List<int[]> collections = new ArrayList<>();
+        while (collections.size() < count) {
+            Collections.shuffle(deck, random);
+            if (seen.add(new HashSet<>(deck.subList(0, 12))))
+                collections.add(deck.subList(0, 12).stream().mapToInt(Integer::intValue).toArray());
+        }
+        return collections;
+    }
+
+    @Test
+    void size_FillsUpToCapacity() {
+        UtilImpl util = createUtil(3, 4);
+        Random random = new Random(0);
+        for (int capacity : capacities) {
+            SetCache cache = new SetCache(util, 81, capacity);
+            for (int[] cards : collections(50 * capacity, random)) {
+                cache.sets(cards, cards.length);
+                assertTrue(cache.size() <= capacity, "capacity " + capacity + " size " + cache.size());
+            }
+            assertEquals(capacity, cache.size(), "capacity " + capacity);
+        }
+    }
+
+    @Test
+    void sets_EvictsLeastRecentlyUsedAtCapacity() {
+        UtilImpl util = createUtil(3, 4);
+        List<int[]> collections = collections(2, new Random(0));
+        int[] first = collections.get(0), second = collections.get(1);
+        SetCache cache = new SetCache(util, 81, 1);
+
+        cache.sets(first, first.length);
+        cache.sets(first, first.length);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // the second collection takes the only entry, so the first one has to be searched again
+        assertEquals(util.countSets(second, second.length), cache.sets(second, second.length).length);
+        assertEquals(util.countSets(first, first.length), cache.sets(first, first.length).length);
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(1, cache.size());
+    }
+}
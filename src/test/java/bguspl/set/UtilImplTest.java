@@ -0,0 +1,164 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static bguspl.set.ex.Fixtures.createUtil;
+import static bguspl.set.ex.Fixtures.variants;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class UtilImplTest {
+
+    /**
+     * The number of random subsets of the deck to check for each variant.
+     */
+    private static final int subsets = 50;
+
+    private static List<Integer> deck(int deckSize) {
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < deckSize; ++card)
+            deck.add(card);
+        return deck;
+    }
+
+    private static void assertSameAsFindSets(UtilImpl util, List<Integer> cards, String variant) {
+        int[] array = cards.stream().mapToInt(Integer::intValue).toArray();
+        String message = variant + " cards: " + cards;
+
+        assertEquals(util.findSets(cards, Integer.MAX_VALUE).size(), util.countSets(array, array.length), message);
+        assertEquals(!util.findSets(cards, 1).isEmpty(), util.hasSet(array, array.length), message);
+    }
+
+    @Test
+    void countSetsAndHasSet_FullDeck() {
+        for (int[] variant : variants) {
+            UtilImpl util = createUtil(variant[0], variant[1]);
+            List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+            assertSameAsFindSets(util, deck, variant[0] + "^" + variant[1]);
+        }
+    }
+
+    @Test
+    void countSetsAndHasSet_RandomCards() {
+        Random random = new Random(0);
+        for (int[] variant : variants) {
+            UtilImpl util = createUtil(variant[0], variant[1]);
+            List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+            for (int i = 0; i < subsets; ++i) {
+                Collections.shuffle(deck, random);
+                List<Integer> cards = deck.subList(0, random.nextInt(Math.min(deck.size(), 15) + 1));
+                assertSameAsFindSets(util, cards, variant[0] + "^" + variant[1]);
+            }
+        }
+    }
+
+    @Test
+    void countSetsAndHasSet_NoCards() {
+        UtilImpl util = createUtil(3, 4);
+        assertEquals(0, util.countSets(new int[0], 0));
+        assertFalse(util.hasSet(new int[0], 0));
+    }
+
+    @Test
+    void testSets_SameAsTestSet() {
+        Random random = new Random(0);
+        for (int[] variant : variants) {
+            UtilImpl util = createUtil(variant[0], variant[1]);
+            List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+            List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+            int count = 100;
+
+            // about half of the candidates are legal sets, the rest are random cards
+            int[] cards = new int[variant[0] * count];
+            for (int i = 0; i < count; ++i) {
+                int[] candidate = sets.get(random.nextInt(sets.size()));
+                for (int j = 0; j < variant[0]; ++j)
+                    cards[j * count + i] = random.nextBoolean() ? candidate[j] : deck.get(random.nextInt(deck.size()));
+            }
+
+            long[] results = new long[(count + Long.SIZE - 1) / Long.SIZE];
+            util.testSets(cards, count, results);
+            for (int i = 0; i < count; ++i) {
+                int[] candidate = new int[variant[0]];
+                for (int j = 0; j < variant[0]; ++j)
+                    candidate[j] = cards[j * count + i];
+                assertEquals(util.testSet(candidate), (results[i / Long.SIZE] >>> i & 1) == 1, variant[0] + "^" + variant[1] + " candidate " + i);
+            }
+        }
+    }
+
+    @Test
+    void testSet_SameAsFeatures() {
+        Random random = new Random(0);
+        for (int[] variant : variants) {
+            UtilImpl util = createUtil(variant[0], variant[1]);
+            int deckSize = (int) Math.pow(variant[0], variant[1]);
+            for (int i = 0; i < 1000; ++i) {
+                // about half of the candidates are completed to legal sets, the rest are random cards
+                int[] candidate = random.ints(variant[0], 0, deckSize).toArray();
+                int last = i % 2 == 0 ? util.completeSet(Arrays.copyOf(candidate, variant[0] - 1)) : -1;
+                if (last >= 0) candidate[variant[0] - 1] = last;
+
+                // every feature is the same on all the cards or different on all of them
+                boolean expected = true;
+                int[][] features = util.cardsToFeatures(candidate);
+                for (int feature = 0; feature < variant[1]; ++feature) {
+                    Set<Integer> values = new HashSet<>();
+                    for (int[] card : features)
+                        values.add(card[feature]);
+                    expected &= values.size() == 1 || values.size() == candidate.length;
+                }
+                assertEquals(expected, util.testSet(candidate), variant[0] + "^" + variant[1] + " candidate " + Arrays.toString(candidate));
+            }
+        }
+    }
+
+    @Test
+    void findSetsWith_SameWithCatalog() throws IOException {
+        Random random = new Random(0);
+        Path directory = Files.createTempDirectory("catalog");
+        try {
+            for (int[] variant : variants) {
+                Path file = directory.resolve(variant[0] + "x" + variant[1]);
+                UtilImpl util = createUtil(variant[0], variant[1]);
+                createUtil(variant[0], variant[1], file.toString()); // creates the catalog file
+                UtilImpl catalogUtil = createUtil(variant[0], variant[1], file.toString());
+
+                List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+                for (int i = 0; i < subsets; ++i) {
+                    Collections.shuffle(deck, random);
+                    int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+                    int len = random.nextInt(cards.length + 1);
+                    int card = random.nextInt(cards.length);
+
+                    List<String> expected = new ArrayList<>();
+                    List<String> actual = new ArrayList<>();
+                    util.findSetsWith(card, cards, len, set -> expected.add(Arrays.toString(set)));
+                    catalogUtil.findSetsWith(card, cards, len, set -> actual.add(Arrays.toString(set)));
+                    Collections.sort(expected);
+                    Collections.sort(actual);
+                    assertEquals(expected, actual, variant[0] + "^" + variant[1] + " card " + card);
+                }
+                int[] all = deck.stream().mapToInt(Integer::intValue).toArray();
+                assertEquals(util.countSets(all, all.length), catalogUtil.countSets(all, all.length));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VirtualClockTest {
+
+    /**
+     * The time the clocks start at.
+     */
+    private static final long start = 1000;
+
+    /**
+     * The real time to wait for a thread to finish before failing (in milliseconds).
+     */
+    private static final long joinMillis = 5000;
+
+    private interface Body {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Creates a game thread and registers it with the clock. The threads of a test are all registered before any of
+     * them starts, as the test thread itself is not registered (and cannot hold the time back).
+     */
+    private static Thread newThread(VirtualClock clock, String name, Body body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (InterruptedException ignored) {}
+        }, name);
+        clock.register(thread);
+        return thread;
+    }
+
+    private static void assertFinishes(Thread thread) throws InterruptedException {
+        thread.join(joinMillis);
+        assertFalse(thread.isAlive(), thread.getName() + " did not finish");
+    }
+
+    @Test
+    void sleep_WakesInDeadlineOrder() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(start);
+        List<String> wakes = Collections.synchronizedList(new ArrayList<>());
+        Thread late = newThread(clock, "late", () -> {
+            clock.sleep(300);
+            wakes.add("late at " + clock.currentTimeMillis());
+        });
+        Thread early = newThread(clock, "early", () -> {
+            clock.sleep(100);
+            wakes.add("early at " + clock.currentTimeMillis());
+        });
+        late.start();
+        early.start();
+        assertFinishes(late);
+        assertFinishes(early);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("early at " + (start + 100));
+        expected.add("late at " + (start + 300));
+        assertEquals(expected, wakes);
+    }
+
+    @Test
+    void sleep_NoAdvanceWhileAThreadRuns() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(start);
+        long[] woke = new long[1];
+        Thread sleeper = newThread(clock, "sleeper", () -> {
+            clock.sleep(1000);
+            woke[0] = clock.currentTimeMillis();
+        });
+        boolean[] release = new boolean[1];
+        Thread worker = newThread(clock, "worker", () -> {
+            while (!isReleased(release)) Thread.yield();
+        });
+        sleeper.start();
+        worker.start();
+
+        Thread.sleep(100);
+        assertEquals(start, clock.currentTimeMillis());
+        assertEquals(true, sleeper.isAlive());
+
+        // once the worker is done, the sleeper is the only thread and time can jump to its deadline
+        setReleased(release);
+        assertFinishes(worker);
+        assertFinishes(sleeper);
+        assertEquals(start + 1000, woke[0]);
+    }
+
+    private static boolean isReleased(boolean[] release) {
+        synchronized (release) {
+            return release[0];
+        }
+    }
+
+    private static void setReleased(boolean[] release) {
+        synchronized (release) {
+            release[0] = true;
+        }
+    }
+
+    @Test
+    void poll_ReturnsNullAtDeadline() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(start);
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        Object[] result = new Object[2];
+        Thread poller = newThread(clock, "poller", () -> {
+            result[0] = clock.poll(queue, 500);
+            result[1] = clock.currentTimeMillis();
+        });
+        poller.start();
+        assertFinishes(poller);
+
+        assertNull(result[0]);
+        assertEquals(start + 500, result[1]);
+    }
+
+    @Test
+    void poll_ReturnsItemOfferedBeforeDeadline() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(start);
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+        Object[] result = new Object[2];
+        Thread poller = newThread(clock, "poller", () -> {
+            result[0] = clock.poll(queue, 500);
+            result[1] = clock.currentTimeMillis();
+        });
+        Thread producer = newThread(clock, "producer", () -> {
+            clock.sleep(100);
+            queue.offer(7);
+        });
+        poller.start();
+        producer.start();
+        assertFinishes(producer);
+        assertFinishes(poller);
+
+        assertEquals(7, result[0]);
+        assertEquals(start + 100, result[1]);
+    }
+}
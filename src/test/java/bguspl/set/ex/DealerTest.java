@@ -0,0 +1,279 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealerTest {
+
+    /**
+     * The real time to wait for a running dealer before failing (in milliseconds).
+     */
+    private static final long joinMillis = 10000;
+
+    Dealer dealer;
+    private Table table;
+    private Util util;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = properties();
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), util);
+
+        table = new Table(env);
+        dealer = createDealer(env, table);
+    }
+
+    /**
+     * @return - the settings of a game of two human players on a table of 12 slots for the 81 cards deck.
+     */
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("HumanPlayers", "2");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        properties.put("BatchClaims", "True");
+        return properties;
+    }
+
+    private static Dealer createDealer(Env env, Table table) {
+        Player[] players = new Player[env.config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+        return dealer;
+    }
+
+    /**
+     * Creates the environment of a game that runs on a virtual clock, so that its turns time out without waiting.
+     */
+    private static Env createVirtualEnv(Properties properties, UserInterface ui) {
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, ui, new UtilImpl(config), new VirtualClock(0));
+    }
+
+    /**
+     * Starts the dealer thread of a game (registered with the clock, as Main does).
+     */
+    private static Thread startDealer(Env env, Dealer dealer) {
+        Thread thread = new Thread(dealer, "dealer");
+        env.clock.register(thread);
+        thread.start();
+        return thread;
+    }
+
+    private static void stopDealer(Dealer dealer, Thread thread) throws InterruptedException {
+        dealer.terminate();
+        thread.join(joinMillis);
+        assertFalse(thread.isAlive(), "the dealer did not terminate");
+    }
+
+    /**
+     * Places the cards of a set on the table and a token of a player on each of them.
+     */
+    private void placeSet(int player, int[] set, int[] slots) {
+        for (int i = 0; i < set.length; i++) {
+            if (!isOnTable(set[i])) table.placeCard(set[i], slots[i]);
+            table.placeToken(player, slots[i]);
+        }
+    }
+
+    private boolean isOnTable(int card) {
+        int[] cards = new int[12];
+        int count = table.getCards(cards);
+        for (int i = 0; i < count; i++)
+            if (cards[i] == card) return true;
+        return false;
+    }
+
+    @Test
+    void removeClaimedSets_OverlappingClaimIsStale() {
+        // two legal sets that share their first card
+        int[] first = {0, 1, 2};
+        int[] second = {0, 3, util.completeSet(new int[]{0, 3})};
+        assertTrue(util.testSet(first));
+        assertTrue(util.testSet(second));
+
+        placeSet(0, first, new int[]{0, 1, 2});
+        placeSet(1, second, new int[]{0, 3, 4});
+        assertEquals(5, table.countCards());
+
+        CompletableFuture<ClaimVerdict> firstVerdict = dealer.onEventHappened(0);
+        CompletableFuture<ClaimVerdict> secondVerdict = dealer.onEventHappened(1);
+        dealer.sleepUntilWokenOrTimeout();
+        dealer.removeCardsFromTable();
+
+        assertEquals(ClaimVerdict.POINT, firstVerdict.getNow(null));
+        assertEquals(ClaimVerdict.STALE, secondVerdict.getNow(null));
+
+        // only the cards of the first set were removed, the rest of the second set is still on the table
+        assertEquals(2, table.countCards());
+        for (int card : first) assertFalse(isOnTable(card));
+        assertTrue(isOnTable(second[1]));
+        assertTrue(isOnTable(second[2]));
+    }
+
+    @Test
+    void onEventHappened_OneOutstandingClaimPerPlayer() {
+        int[] set = {0, 1, 2};
+        placeSet(0, set, new int[]{0, 1, 2});
+
+        List<CompletableFuture<ClaimVerdict>> verdicts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) verdicts.add(dealer.onEventHappened(0));
+        for (CompletableFuture<ClaimVerdict> verdict : verdicts) assertSame(verdicts.get(0), verdict);
+        dealer.sleepUntilWokenOrTimeout();
+        dealer.removeCardsFromTable();
+
+        assertEquals(ClaimVerdict.POINT, verdicts.get(0).getNow(null));
+        assertEquals(0, table.countCards());
+
+        // the claim was checked, so the next one is a new claim
+        assertNotSame(verdicts.get(0), dealer.onEventHappened(0));
+    }
+
+    @Test
+    void run_SolvableDealingAlwaysDealsASet() throws InterruptedException {
+        Properties properties = properties();
+        properties.put("SolvableDealing", "True");
+        properties.put("TurnTimeoutSeconds", "1");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        Env env = createVirtualEnv(properties, new TableTest.MockUserInterface());
+        Table table = new Table(env);
+        Dealer dealer = createDealer(env, table);
+
+        // every turn times out, and the whole deck is dealt again
+        List<Integer> setsPerDeal = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch deals = new CountDownLatch(50);
+        table.addObserver((cards, slots) -> {
+            if (cards.length < env.config.tableSize) return;
+            setsPerDeal.add(env.util.countSets(cards, cards.length));
+            deals.countDown();
+        });
+        Thread thread = startDealer(env, dealer);
+        assertTrue(deals.await(joinMillis, TimeUnit.MILLISECONDS), "the dealer did not deal 50 times");
+        stopDealer(dealer, thread);
+
+        synchronized (setsPerDeal) {
+            for (int sets : setsPerDeal) assertTrue(sets > 0, "dealt a table without a set: " + setsPerDeal);
+        }
+    }
+
+    @Test
+    void run_ReshuffleReturnsAllCardsToTheDeck() throws InterruptedException {
+        Properties properties = properties();
+        properties.put("TurnTimeoutSeconds", "1");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        Env env = createVirtualEnv(properties, new TableTest.MockUserInterface());
+        Table table = new Table(env);
+        Dealer dealer = createDealer(env, table);
+
+        // 30 deals of 12 cards go through the 81 cards deck several times
+        List<String> deals = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch dealt = new CountDownLatch(30);
+        table.addObserver((cards, slots) -> {
+            if (cards.length == 0) return; // the cards were returned to the deck
+            Set<Integer> distinct = new HashSet<>();
+            for (int card : cards) distinct.add(card);
+            deals.add(cards.length + " cards, " + distinct.size() + " distinct");
+            dealt.countDown();
+        });
+        Thread thread = startDealer(env, dealer);
+        assertTrue(dealt.await(joinMillis, TimeUnit.MILLISECONDS), "the dealer did not deal 30 times: " + deals);
+        stopDealer(dealer, thread);
+
+        synchronized (deals) {
+            for (String deal : deals) assertEquals("12 cards, 12 distinct", deal);
+        }
+    }
+
+    @Test
+    void run_CountdownTicksByTheClock() throws InterruptedException {
+        Properties properties = properties();
+        properties.put("TurnTimeoutSeconds", "3");
+        properties.put("TurnTimeoutWarningSeconds", "1");
+        List<String> countdowns = Collections.synchronizedList(new ArrayList<>());
+        Env env = createVirtualEnv(properties, new TableTest.MockUserInterface() {
+            @Override
+            public void setCountdown(long millies, boolean warn) {
+                countdowns.add(millies + (warn ? " warn" : ""));
+            }
+        });
+        Dealer dealer = createDealer(env, new Table(env));
+
+        Thread thread = startDealer(env, dealer);
+        long deadline = System.currentTimeMillis() + joinMillis;
+        while (countdowns.size() < 12 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        stopDealer(dealer, thread);
+
+        // whole seconds until the warning, then every 100 milliseconds of the first turn
+        List<String> expected = new ArrayList<>();
+        expected.add("2999");
+        expected.add("1999");
+        for (long millies = 999; millies > 0; millies -= 100) expected.add(millies + " warn");
+        synchronized (countdowns) {
+            assertTrue(countdowns.size() >= 12, "too few countdowns: " + countdowns);
+            assertEquals(expected, countdowns.subList(0, 12));
+        }
+    }
+
+    @Test
+    void run_ClaimVerdictsOfARunningDealer() throws InterruptedException {
+        Properties properties = properties();
+        properties.put("SolvableDealing", "True");
+        properties.put("TurnTimeoutSeconds", "60");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        Env env = createVirtualEnv(properties, new TableTest.MockUserInterface());
+        Table table = new Table(env);
+        Dealer dealer = createDealer(env, table);
+
+        // the test thread is a game thread too, so the turn does not time out while it places tokens
+        env.clock.register(Thread.currentThread());
+        CompletableFuture<Void> dealt = new CompletableFuture<>();
+        table.addObserver((cards, slots) -> dealt.complete(null));
+        Thread thread = startDealer(env, dealer);
+        env.clock.await(dealt);
+
+        int[] set = table.getSets().get(0);
+        for (int slot = 0; slot < table.slotToCard.length; slot++)
+            for (int card : set)
+                if (table.slotToCard[slot] == card) table.placeOrRemoveToken(0, slot);
+        int[] notSet = {0, 1, 2};
+        while (env.util.testSet(new int[]{table.slotToCard[notSet[0]], table.slotToCard[notSet[1]], table.slotToCard[notSet[2]]}))
+            notSet[2]++;
+        for (int slot : notSet) table.placeOrRemoveToken(1, slot);
+
+        assertEquals(ClaimVerdict.PENALTY, env.clock.await(dealer.onEventHappened(1)));
+        assertEquals(ClaimVerdict.POINT, env.clock.await(dealer.onEventHappened(0)));
+        stopDealer(dealer, thread);
+    }
+}
@@ -0,0 +1,44 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+
+import java.util.Properties;
+
+/**
+ * The games the tests of the set searches run on: a deck of each supported size, with no table or players.
+ */
+public final class Fixtures {
+
+    /**
+     * The (featureSize, featureCount) combinations the set searches support.
+     */
+    public static final int[][] variants = {{2, 3}, {3, 1}, {3, 2}, {3, 3}, {3, 4}, {3, 5}, {4, 2}, {4, 3}, {5, 2}};
+
+    private Fixtures() {}
+
+    /**
+     * @param setCatalogFile - the file of the catalog of the sets of the deck (empty for no catalog).
+     */
+    public static Config createConfig(int featureSize, int featureCount, String setCatalogFile) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("SetCatalogFile", setCatalogFile);
+        return new Config(new TableTest.MockLogger(), properties);
+    }
+
+    public static UtilImpl createUtil(int featureSize, int featureCount) {
+        return createUtil(featureSize, featureCount, "");
+    }
+
+    public static UtilImpl createUtil(int featureSize, int featureCount, String setCatalogFile) {
+        return new UtilImpl(createConfig(featureSize, featureCount, setCatalogFile));
+    }
+
+    public static Env createEnv(int featureSize, int featureCount) {
+        Config config = createConfig(featureSize, featureCount, "");
+        return new Env(new TableTest.MockLogger(), config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+}
@@ -0,0 +1,68 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static bguspl.set.ex.Fixtures.createEnv;
+import static bguspl.set.ex.Fixtures.variants;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SolvabilityTrackerTest {
+
+    private static void assertSameAsCountSets(Env env, SolvabilityTracker tracker, List<Integer> remaining, String step) {
+        int[] cards = remaining.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals(env.util.countSets(cards, cards.length), tracker.remainingSets(), step);
+    }
+
+    @Test
+    void remainingSets_SameAsCountSetsAfterRemovingCards() {
+        Random random = new Random(0);
+        for (int[] variant : variants) {
+            Env env = createEnv(variant[0], variant[1]);
+            SolvabilityTracker tracker = new SolvabilityTracker(env);
+            List<Integer> remaining = new ArrayList<>();
+            for (int card = 0; card < env.config.deckSize; ++card)
+                remaining.add(card);
+            Collections.shuffle(remaining, random);
+            String name = variant[0] + "^" + variant[1];
+            assertSameAsCountSets(env, tracker, remaining, name + " full deck");
+
+            while (!remaining.isEmpty()) {
+                int card = remaining.remove(remaining.size() - 1);
+                tracker.removeSet(new int[]{card});
+                assertSameAsCountSets(env, tracker, remaining, name + " removed " + card);
+            }
+            assertEquals(0, tracker.remainingSets(), name);
+        }
+    }
+
+    @Test
+    void remainingSets_SameAsCountSetsAfterRemovingSets() {
+        Random random = new Random(0);
+        for (int[] variant : variants) {
+            Env env = createEnv(variant[0], variant[1]);
+            SolvabilityTracker tracker = new SolvabilityTracker(env);
+            List<Integer> remaining = new ArrayList<>();
+            for (int card = 0; card < env.config.deckSize; ++card)
+                remaining.add(card);
+            String name = variant[0] + "^" + variant[1];
+
+            // collect random legal sets (removing a card that is already out of the game is ignored)
+            while (tracker.remainingSets() > 0) {
+                Collections.shuffle(remaining, random);
+                List<int[]> sets = env.util.findSets(remaining, 1);
+                int[] set = sets.get(0);
+                tracker.removeSet(set);
+                tracker.removeSet(set);
+                for (int card : set)
+                    remaining.remove(Integer.valueOf(card));
+                assertSameAsCountSets(env, tracker, remaining, name + " remaining " + remaining.size());
+            }
+        }
+    }
+}
@@ -2,16 +2,22 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.IntSetSink;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 class TableTest {
 
@@ -19,6 +25,11 @@ class TableTest {
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
 
+    /**
+     * The util of the table created by createTableWithUtil.
+     */
+    private Util util;
+
     @BeforeEach
     void setUp() {
 
@@ -95,6 +106,128 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    /**
+     * Creates a table of 12 slots for the 81 cards deck, that finds its sets with a real util.
+     */
+    private Table createTableWithUtil() {
+        return createTableWithUtil(new Integer[12], new Integer[81]);
+    }
+
+    /**
+     * Creates a table of 12 slots for the 81 cards deck with the given cards on it, that finds its sets with a real util.
+     */
+    private Table createTableWithUtil(Integer[] slotToCard, Integer[] cardToSlot) {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        return new Table(new Env(logger, config, new MockUserInterface(), util), slotToCard, cardToSlot);
+    }
+
+    private void assertSameAsCountSets(Table table, String step) {
+        int[] cards = new int[12];
+        int count = table.getCards(cards);
+        assertEquals(util.countSets(cards, count), table.countSets(), step);
+    }
+
+    @Test
+    void countSets_SameAsCountSetsAfterPlaceAndRemove() {
+        Table table = createTableWithUtil();
+        Random random = new Random(0);
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < 81; ++card)
+            deck.add(card);
+        Collections.shuffle(deck, random);
+        Integer[] slots = new Integer[12];
+
+        for (int step = 0; step < 500; ++step) {
+            int slot = random.nextInt(slots.length);
+            if (slots[slot] == null) {
+                slots[slot] = deck.remove(deck.size() - 1);
+                table.placeCard(slots[slot], slot);
+            } else if (random.nextInt(4) > 0) {
+                deck.add(0, slots[slot]);
+                slots[slot] = null;
+                table.removeCard(slot);
+            } else {
+                List<int[]> sets = table.getSets();
+                if (sets.isEmpty()) continue;
+                int[] set = sets.get(random.nextInt(sets.size()));
+                table.removeSet(set);
+                for (int card : set) {
+                    for (int i = 0; i < slots.length; ++i)
+                        if (slots[i] != null && slots[i] == card) slots[i] = null;
+                    deck.add(0, card);
+                }
+            }
+            assertSameAsCountSets(table, "step " + step);
+        }
+    }
+
+    @Test
+    void countSets_NoSetsAfterRemoveAllCards() {
+        Table table = createTableWithUtil();
+        int[] slots = new int[12];
+        for (int slot = 0; slot < 12; ++slot) {
+            table.placeCard(slot, slot);
+            slots[slot] = slot;
+        }
+        assertSameAsCountSets(table, "placed");
+
+        assertEquals(12, table.removeAllCards(slots, new int[12]));
+        assertEquals(0, table.countSets());
+        assertSameAsCountSets(table, "removed all");
+
+        for (int slot = 0; slot < 12; ++slot)
+            table.placeCard(80 - slot, slot);
+        assertSameAsCountSets(table, "placed again");
+    }
+
+    @Test
+    void countSets_SameAsCountSetsWithCardsFromTheStart() {
+        Integer[] slotToCard = new Integer[12];
+        Integer[] cardToSlot = new Integer[81];
+        for (int slot = 0; slot < 12; ++slot) {
+            slotToCard[slot] = slot;
+            cardToSlot[slot] = slot;
+        }
+        Table table = createTableWithUtil(slotToCard, cardToSlot);
+
+        assertSameAsCountSets(table, "created");
+    }
+
+    @Test
+    void placeCard_ReplacesTheCardInTheSlot() {
+        Table table = createTableWithUtil();
+        for (int slot = 0; slot < 12; ++slot)
+            table.placeCard(slot, slot);
+
+        for (int slot = 0; slot < 12; ++slot)
+            table.placeCard(80 - slot, slot);
+        assertEquals(12, table.countCards());
+        assertSameAsCountSets(table, "replaced");
+    }
+
+    @Test
+    void removeSet_NothingRemovedIfACardIsMissing() {
+        Table table = createTableWithUtil();
+        for (int slot = 0; slot < 12; ++slot)
+            table.placeCard(slot, slot);
+        int[] set = table.getSets().get(0).clone();
+        set[set.length - 1] = 80; // not on the table
+
+        assertFalse(table.removeSet(set));
+        assertEquals(12, table.countCards());
+        assertSameAsCountSets(table, "not removed");
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -133,16 +266,55 @@ class TableTest {
             return new int[0][];
         }
 
+        @Override
+        public void cardsToFeatures(int[] cards, int[][] features) {}
+
+        @Override
+        public void cardToFeatures(int card, int[] features) {}
+
+        @Override
+        public int feature(int card, int feature) {
+            return 0;
+        }
+
         @Override
         public boolean testSet(int[] cards) {
             return false;
         }
 
+        @Override
+        public void testSets(int[] cards, int count, long[] results) {}
+
+        @Override
+        public int completeSet(int[] cards) {
+            return -1;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
         }
 
+        @Override
+        public int findSets(int[] cards, int len, int count, IntSetSink sink) {
+            return 0;
+        }
+
+        @Override
+        public boolean hasSet(int[] cards, int len) {
+            return false;
+        }
+
+        @Override
+        public int countSets(int[] cards, int len) {
+            return 0;
+        }
+
+        @Override
+        public int findSetsWith(int card, int[] cards, int len, IntSetSink sink) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }